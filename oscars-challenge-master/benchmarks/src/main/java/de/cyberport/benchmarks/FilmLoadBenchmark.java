@@ -0,0 +1,54 @@
+package de.cyberport.benchmarks;
+
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmTable;
+import de.cyberport.core.testing.SyntheticFilms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading phase: reading the children of the film container into the columnar table, and building
+ * the sort orders and lookup indexes on top of it.
+ *
+ * @author ritendra_singh
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FilmLoadBenchmark {
+
+    @Param({"1316", "100000", "1000000"})
+    private int size;
+
+    private SyntheticFilmContainer container;
+
+    @Setup
+    public void setUp() {
+        container = SyntheticFilmContainer.create(size, SyntheticFilms.DEFAULT_SEED);
+    }
+
+    @Benchmark
+    public FilmTable table() {
+        return FilmTable.fromContainer(container);
+    }
+
+    @Benchmark
+    public FilmIndex index() {
+        return FilmIndex.build(container);
+    }
+}
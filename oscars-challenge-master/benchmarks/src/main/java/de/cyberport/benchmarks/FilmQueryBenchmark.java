@@ -0,0 +1,134 @@
+package de.cyberport.benchmarks;
+
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmQuery;
+import de.cyberport.core.index.ParallelScan;
+import de.cyberport.core.index.QueryPlan;
+import de.cyberport.core.metrics.QueryMetrics;
+import de.cyberport.core.metrics.QueryTrace;
+import de.cyberport.core.testing.SyntheticFilms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Filtering, sorting and limit phases: planning and selecting the rows of one compiled query.
+ * The queries with the default sort order measure the filters alone, the ones with another sort
+ * key add the sorting, and the limit shows how early the selection stops. The traced selection
+ * adds the recording of the query metrics, compared with the plain one it shows their overhead.
+ * The parallel selection splits every walk over the sort order into segments tested on four threads.
+ * The title searches are answered from the trigram and ordered title indexes.
+ *
+ * @author ritendra_singh
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FilmQueryBenchmark {
+
+    @Param({"1316", "100000", "1000000"})
+    private int size;
+
+    @Param({
+            "",
+            "year=2019",
+            "minYear=1950&minAwards=4",
+            "nominations=11&isBestPicture=true",
+            "title=The Last",
+            "titlePrefix=The Last Night",
+            "titleContains=River King",
+            "titleFuzzy=The Lost Kng&titleDistance=1",
+            "sortBy=year",
+            "minYear=1950&maxAwards=2&sortBy=awards",
+            "isBestPicture=true&sortBy=nominations"
+    })
+    private String query;
+
+    @Param({"", "10", "1000"})
+    private String limit;
+
+    private FilmIndex filmIndex;
+    private FilmIndex parallelFilmIndex;
+    private ParallelScan parallelScan;
+    private FilmQuery filmQuery;
+    private final QueryMetrics queryMetrics = new QueryMetrics();
+
+    @Setup
+    public void setUp() {
+        final SyntheticFilmContainer container = SyntheticFilmContainer.create(size, SyntheticFilms.DEFAULT_SEED);
+        filmIndex = FilmIndex.build(container);
+        parallelScan = new ParallelScan(4, 0, 32768);
+        parallelFilmIndex = FilmIndex.build(container, parallelScan);
+        final Map<String, String> parameters = parse(query);
+        if (!limit.isEmpty()) {
+            parameters.put(LIMIT, limit);
+        }
+        filmQuery = FilmQuery.compile(parameters::get);
+    }
+
+    @TearDown
+    public void tearDown() {
+        parallelScan.shutdown();
+    }
+
+    @Benchmark
+    public QueryPlan plan() {
+        return filmIndex.plan(filmQuery.getFilter());
+    }
+
+    @Benchmark
+    public int[] select() {
+        return filmIndex.select(filmQuery.getFilter(), filmQuery.getSortKey(), filmQuery.getLimit());
+    }
+
+    @Benchmark
+    public int[] selectParallel() {
+        return parallelFilmIndex.select(filmQuery.getFilter(), filmQuery.getSortKey(), filmQuery.getLimit());
+    }
+
+    @Benchmark
+    public int[] selectTraced() {
+        final QueryTrace trace = queryMetrics.startTrace();
+        trace.setShape(filmQuery.getShape());
+        final int[] rows = filmIndex.select(filmQuery.getFilter(), filmQuery.getSortKey(), filmQuery.getLimit());
+        trace.endPhase(QueryTrace.Phase.SELECT);
+        trace.setResultSize(rows.length);
+        queryMetrics.record(trace);
+        return rows;
+    }
+
+    /**
+     * Parameters of a query string, values are taken as they are
+     * @param queryString
+     * @return
+     */
+    static Map<String, String> parse(final String queryString) {
+        final Map<String, String> parameters = new HashMap<>();
+        for (String parameter : queryString.split("&")) {
+            final int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+            }
+        }
+        return parameters;
+    }
+}
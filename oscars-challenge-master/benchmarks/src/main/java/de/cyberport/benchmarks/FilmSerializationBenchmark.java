@@ -0,0 +1,150 @@
+package de.cyberport.benchmarks;
+
+import de.cyberport.core.index.FilmField;
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.SortKey;
+import de.cyberport.core.serialization.FilmBinaryReader;
+import de.cyberport.core.serialization.FilmBinaryWriter;
+import de.cyberport.core.serialization.FilmJsonWriter;
+import de.cyberport.core.services.CachedResult;
+import de.cyberport.core.testing.SyntheticFilms;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization phase: streaming the result rows as JSON or in the binary format, and compressing the
+ * body for clients that accept gzip. Both are measured separately, as the compression runs once per
+ * cached result while the plain body is written for every result computed. The decoding of both
+ * formats on the client side is measured as well, JSON with the org.json parser. The size of the
+ * bodies written is reported as the bytes counter of the json, binary and gzip benchmarks.
+ *
+ * @author ritendra_singh
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FilmSerializationBenchmark {
+
+    @Param({"1316", "100000", "1000000"})
+    private int size;
+
+    @Param({"10", "1000", "all"})
+    private String rows;
+
+    @Param({"all", "title,year"})
+    private String fields;
+
+    private FilmIndex filmIndex;
+    private int[] resultRows;
+    private int projection;
+    private byte[] body;
+    private byte[] binaryBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        filmIndex = FilmIndex.build(SyntheticFilmContainer.create(size, SyntheticFilms.DEFAULT_SEED));
+        final int[] order = filmIndex.getSortOrder(SortKey.TITLE);
+        resultRows = "all".equals(rows) ? order : Arrays.copyOf(order, Math.min(order.length, Integer.parseInt(rows)));
+        projection = projection(fields);
+        body = writeJson();
+        binaryBody = writeBinary();
+    }
+
+    @Benchmark
+    public byte[] json(final BodySize bodySize) throws IOException {
+        return bodySize.of(writeJson());
+    }
+
+    @Benchmark
+    public byte[] binary(final BodySize bodySize) throws IOException {
+        return bodySize.of(writeBinary());
+    }
+
+    @Benchmark
+    public void jsonDecode(final Blackhole blackhole) throws JSONException {
+        final JSONArray films = new JSONObject(new String(body, StandardCharsets.UTF_8)).getJSONArray("result");
+        for (int i = 0; i < films.length(); i++) {
+            final JSONObject film = films.getJSONObject(i);
+            blackhole.consume(film.optString("title"));
+            blackhole.consume(film.optInt("year"));
+            blackhole.consume(film.optInt("awards"));
+            blackhole.consume(film.optInt("nominations"));
+            blackhole.consume(film.optBoolean("isBestPicture"));
+            blackhole.consume(film.optInt("numberOfReferences"));
+        }
+    }
+
+    @Benchmark
+    public FilmBinaryReader.Result binaryDecode() throws IOException {
+        return FilmBinaryReader.read(binaryBody);
+    }
+
+    @Benchmark
+    public byte[] gzip(final BodySize bodySize) {
+        return bodySize.of(new CachedResult(0, 0, resultRows, body, "\"0\"", 0).getGzipBody());
+    }
+
+    private byte[] writeJson() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new FilmJsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))
+                .writeResult(filmIndex.getTable(), resultRows, projection, null);
+        return output.toByteArray();
+    }
+
+    private byte[] writeBinary() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new FilmBinaryWriter(output).writeResult(filmIndex.getTable(), resultRows, projection, null);
+        return output.toByteArray();
+    }
+
+    /**
+     * Size of the last body written by a benchmark, reported as its bytes counter
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class BodySize {
+
+        public long bytes;
+
+        byte[] of(final byte[] body) {
+            bytes = body.length;
+            return body;
+        }
+    }
+
+    private static int projection(final String fields) {
+        if ("all".equals(fields)) {
+            return FilmField.ALL;
+        }
+        int projection = 0;
+        for (String field : fields.split(",")) {
+            projection |= FilmField.fromParameter(field).mask();
+        }
+        return projection;
+    }
+}
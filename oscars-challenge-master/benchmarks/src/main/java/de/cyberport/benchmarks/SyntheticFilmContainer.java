@@ -0,0 +1,171 @@
+package de.cyberport.benchmarks;
+
+import de.cyberport.core.testing.SyntheticFilms;
+import org.apache.sling.api.resource.AbstractResource;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * In-memory film container with generated children, shaped like the content loaded from oscars.json,
+ * to measure the loading of the film index without a repository. Only the parts of the resource API
+ * read by the index are backed, the resource resolver is not available.
+ *
+ * @author ritendra_singh
+ *
+ */
+final class SyntheticFilmContainer extends AbstractResource {
+
+    static final String PATH = "/content/oscars";
+
+    private static final String CONTAINER_RESOURCE_TYPE = "test/filmEntryContainer";
+    private static final String ENTRY_RESOURCE_TYPE = "test/filmEntry";
+
+    private final List<Resource> children;
+    private final ValueMap properties;
+
+    private SyntheticFilmContainer(final List<Resource> children) {
+        this.children = Collections.unmodifiableList(children);
+        this.properties = new ValueMapDecorator(Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Container with the given number of generated films
+     * @param count
+     * @param seed
+     * @return
+     */
+    static SyntheticFilmContainer create(final int count, final long seed) {
+        final List<Resource> children = new ArrayList<>(count);
+        SyntheticFilms.DEFAULT.generate(count, seed, (name, title, year, awards, nominations, bestPicture, references) -> {
+            final Map<String, Object> film = new HashMap<>();
+            film.put(TITLE, title);
+            film.put(YEAR, year);
+            film.put(AWARDS, awards);
+            film.put(NOMINATIONS, nominations);
+            film.put(IS_BEST_PICTURE, bestPicture);
+            film.put(NUMBER_OF_REFERENCES, references);
+            children.add(new Entry(PATH + '/' + name, new ValueMapDecorator(film)));
+        });
+        return new SyntheticFilmContainer(children);
+    }
+
+    int size() {
+        return children.size();
+    }
+
+    @Override
+    public String getPath() {
+        return PATH;
+    }
+
+    @Override
+    public String getResourceType() {
+        return CONTAINER_RESOURCE_TYPE;
+    }
+
+    @Override
+    public String getResourceSuperType() {
+        return null;
+    }
+
+    @Override
+    public ResourceMetadata getResourceMetadata() {
+        return new ResourceMetadata();
+    }
+
+    @Override
+    public ResourceResolver getResourceResolver() {
+        return null;
+    }
+
+    @Override
+    public ValueMap getValueMap() {
+        return properties;
+    }
+
+    @Override
+    public Iterator<Resource> listChildren() {
+        return children.iterator();
+    }
+
+    @Override
+    public Iterable<Resource> getChildren() {
+        return children;
+    }
+
+    @Override
+    public boolean hasChildren() {
+        return !children.isEmpty();
+    }
+
+    /**
+     * One generated film below the container
+     */
+    private static final class Entry extends AbstractResource {
+
+        private final String path;
+        private final ValueMap properties;
+
+        private Entry(final String path, final ValueMap properties) {
+            this.path = path;
+            this.properties = properties;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getResourceType() {
+            return ENTRY_RESOURCE_TYPE;
+        }
+
+        @Override
+        public String getResourceSuperType() {
+            return null;
+        }
+
+        @Override
+        public ResourceMetadata getResourceMetadata() {
+            return new ResourceMetadata();
+        }
+
+        @Override
+        public ResourceResolver getResourceResolver() {
+            return null;
+        }
+
+        @Override
+        public ValueMap getValueMap() {
+            return properties;
+        }
+
+        @Override
+        public Iterator<Resource> listChildren() {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public Iterable<Resource> getChildren() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean hasChildren() {
+            return false;
+        }
+    }
+}
@@ -6,6 +6,10 @@ package de.cyberport.core.constants;
  */
 public class OscarConstants {
     public static final String TITLE = "title";
+    public static final String TITLE_PREFIX = "titlePrefix";
+    public static final String TITLE_CONTAINS = "titleContains";
+    public static final String TITLE_FUZZY = "titleFuzzy";
+    public static final String TITLE_DISTANCE = "titleDistance";
     public static final String YEAR = "year";
     public static final String MIN_YEAR = "minYear";
     public static final String MAX_YEAR = "maxYear";
@@ -14,8 +18,41 @@ public class OscarConstants {
     public static final String MAX_AWARDS = "maxAwards";
     public static final String NOMINATIONS = "nominations";
     public static final String IS_BEST_PICTURE = "isBestPicture";
+    public static final String NUMBER_OF_REFERENCES = "numberOfReferences";
     public static final String SORT_BY = "sortBy";
     public static final String LIMIT = "limit";
+    public static final String CURSOR = "cursor";
+    public static final String FIELDS = "fields";
+    public static final String RESULT = "result";
+    public static final String NEXT = "next";
+    public static final String COUNT = "count";
+    public static final String MIN = "min";
+    public static final String MAX = "max";
+    public static final String SUM = "sum";
+    public static final String ERROR = "error";
+    public static final String SLOW_QUERIES = "slowQueries";
+    public static final String TIMESTAMP = "timestamp";
+    public static final String CONTAINER_PATH = "containerPath";
+    public static final String QUERY = "query";
+    public static final String SHAPE = "shape";
+    public static final String EXAMINED_ROWS = "examinedRows";
+    public static final String RETURNED_ROWS = "returnedRows";
+    public static final String CACHE_HIT = "cacheHit";
+    public static final String DURATION_MILLIS = "durationMillis";
+    public static final String PHASES = "phases";
 
     public static final String RESPONSE_CONTENT_TYPE = "application/json; charset=UTF-8";
+    public static final String BINARY_CONTENT_TYPE = "application/vnd.cyberport.films";
+
+    public static final String EXTENSION_JSON = "json";
+    public static final String EXTENSION_BINARY = "bin";
+
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    public static final String HEADER_ACCEPT = "Accept";
+    public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    public static final String HEADER_VARY = "Vary";
+    public static final String ENCODING_GZIP = "gzip";
 }
@@ -0,0 +1,99 @@
+package de.cyberport.core.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Bitmap index over one int column of a {@link FilmTable}: one bitmap of rows per distinct value.
+ * Equality and range filters are answered by OR-ing the bitmaps of the matching values,
+ * so that several filters can be combined with word-level AND operations instead of a scan.
+ *
+ * @author ritendra_singh
+ *
+ */
+final class BitmapColumnIndex {
+
+    private final int[] values;
+    private final BitSet[] bitmaps;
+    private final int rowCount;
+    private final ColumnStatistics statistics;
+
+    private BitmapColumnIndex(final int[] values, final BitSet[] bitmaps, final int rowCount) {
+        this.values = values;
+        this.bitmaps = bitmaps;
+        this.rowCount = rowCount;
+        final int[] counts = new int[bitmaps.length];
+        for (int bucket = 0; bucket < bitmaps.length; bucket++) {
+            counts[bucket] = bitmaps[bucket].cardinality();
+        }
+        this.statistics = ColumnStatistics.build(values, counts, rowCount);
+    }
+
+    /**
+     * Build the index of a column, the column is read through the given row accessor
+     * @param rowCount
+     * @param column
+     * @return
+     */
+    static BitmapColumnIndex build(final int rowCount, final IntUnaryOperator column) {
+        final int[] values = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            values[row] = column.applyAsInt(row);
+        }
+        final int[] distinctValues = Arrays.stream(values).distinct().sorted().toArray();
+
+        final BitSet[] bitmaps = new BitSet[distinctValues.length];
+        for (int bucket = 0; bucket < bitmaps.length; bucket++) {
+            bitmaps[bucket] = new BitSet(rowCount);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            bitmaps[Arrays.binarySearch(distinctValues, values[row])].set(row);
+        }
+        return new BitmapColumnIndex(distinctValues, bitmaps, rowCount);
+    }
+
+    /**
+     * Rows with a value between min and max, both inclusive
+     * @param min
+     * @param max
+     * @return
+     */
+    BitSet range(final int min, final int max) {
+        final BitSet result = new BitSet(rowCount);
+        for (int bucket = firstBucket(min); bucket < values.length && values[bucket] <= max; bucket++) {
+            result.or(bitmaps[bucket]);
+        }
+        return result;
+    }
+
+    /**
+     * Histogram of the indexed column, built together with the bitmaps
+     * @return
+     */
+    ColumnStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Position of the given value in the ascending distinct values of the column
+     * @param value a value of the column
+     * @return
+     */
+    int bucketOf(final int value) {
+        return Arrays.binarySearch(values, value);
+    }
+
+    int getValue(final int bucket) {
+        return values[bucket];
+    }
+
+    int getDistinctValueCount() {
+        return values.length;
+    }
+
+    private int firstBucket(final int min) {
+        final int position = Arrays.binarySearch(values, min);
+        return position >= 0 ? position : -position - 1;
+    }
+}
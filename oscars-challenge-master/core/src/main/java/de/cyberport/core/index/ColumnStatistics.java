@@ -0,0 +1,82 @@
+package de.cyberport.core.index;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of one int column of a {@link FilmTable} with one bucket per distinct value.
+ * The columns of the film data have few distinct values, so the histogram is exact and the number
+ * of rows in a range is answered with two binary searches over the cumulative bucket counts.
+ *
+ * @author ritendra_singh
+ *
+ */
+final class ColumnStatistics {
+
+    private final int[] values;
+    private final int[] cumulativeCounts;
+    private final int rowCount;
+
+    private ColumnStatistics(final int[] values, final int[] cumulativeCounts, final int rowCount) {
+        this.values = values;
+        this.cumulativeCounts = cumulativeCounts;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Build the histogram from the sorted distinct values of a column and the row count of each value
+     * @param values
+     * @param counts
+     * @param rowCount
+     * @return
+     */
+    static ColumnStatistics build(final int[] values, final int[] counts, final int rowCount) {
+        final int[] cumulativeCounts = new int[counts.length];
+        int total = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            total += counts[bucket];
+            cumulativeCounts[bucket] = total;
+        }
+        return new ColumnStatistics(values, cumulativeCounts, rowCount);
+    }
+
+    /**
+     * Number of rows with a value between min and max, both inclusive
+     * @param min
+     * @param max
+     * @return
+     */
+    int count(final int min, final int max) {
+        if (min > max) {
+            return 0;
+        }
+        final int first = firstBucket(min);
+        final int last = firstBucket(max == Integer.MAX_VALUE ? max : max + 1) - 1;
+        if (last < first) {
+            return 0;
+        }
+        return cumulativeCounts[last] - (first > 0 ? cumulativeCounts[first - 1] : 0);
+    }
+
+    /**
+     * Fraction of the rows with a value between min and max
+     * @param min
+     * @param max
+     * @return
+     */
+    double selectivity(final int min, final int max) {
+        return rowCount == 0 ? 0 : (double) count(min, max) / rowCount;
+    }
+
+    int getDistinctValueCount() {
+        return values.length;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    private int firstBucket(final int min) {
+        final int position = Arrays.binarySearch(values, min);
+        return position >= 0 ? position : -position - 1;
+    }
+}
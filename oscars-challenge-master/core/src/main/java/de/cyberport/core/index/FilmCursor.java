@@ -0,0 +1,104 @@
+package de.cyberport.core.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import static de.cyberport.core.constants.OscarConstants.CURSOR;
+
+/**
+ * Position in the order of a sort key, right after the last film of a page: the sort key value of
+ * that film and its name in the container as tie-breaker. Cursors are handed to the client as an
+ * opaque URL-safe token and resumed with {@link FilmIndex#resume(FilmCursor)}.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmCursor {
+
+    private static final int VERSION = 1;
+
+    private final SortKey sortKey;
+    private final String value;
+    private final String name;
+
+    private FilmCursor(final SortKey sortKey, final String value, final String name) {
+        this.sortKey = sortKey;
+        this.value = value;
+        this.name = name;
+    }
+
+    /**
+     * Cursor right after the given row in the order of the sort key
+     * @param sortKey
+     * @param table
+     * @param row
+     * @return
+     */
+    public static FilmCursor after(final SortKey sortKey, final FilmTable table, final int row) {
+        return new FilmCursor(sortKey, sortKey.getValue(table, row), table.getName(row));
+    }
+
+    /**
+     * Decode a token created by {@link #encode()}
+     * @param token
+     * @return
+     * @throws InvalidQueryException if the token is malformed
+     */
+    public static FilmCursor decode(final String token) {
+        final String sortBy;
+        final String value;
+        final String name;
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (input.readUnsignedByte() != VERSION) {
+                throw new IOException("Unsupported cursor version");
+            }
+            sortBy = input.readUTF();
+            value = input.readUTF();
+            name = input.readUTF();
+            if (input.available() > 0) {
+                throw new IOException("Unexpected bytes after the cursor");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new InvalidQueryException(CURSOR, token);
+        }
+
+        final SortKey sortKey = SortKey.fromParameter(sortBy);
+        if (!sortKey.getParameterValue().equals(sortBy) || !sortKey.isValidValue(value)) {
+            throw new InvalidQueryException(CURSOR, token);
+        }
+        return new FilmCursor(sortKey, value, name);
+    }
+
+    /**
+     * Opaque URL-safe token of this cursor
+     * @return
+     */
+    public String encode() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(VERSION);
+            output.writeUTF(sortKey.getParameterValue());
+            output.writeUTF(value);
+            output.writeUTF(name);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    String getName() {
+        return name;
+    }
+}
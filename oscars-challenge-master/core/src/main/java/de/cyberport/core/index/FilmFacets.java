@@ -0,0 +1,171 @@
+package de.cyberport.core.index;
+
+import java.util.Arrays;
+
+/**
+ * Aggregation of the films matching a filter: the number of films per year, awards, nominations
+ * and best picture value, and the minimum, maximum and sum of their numberOfReferences.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmFacets {
+
+    private final int count;
+    private final ValueCounts years;
+    private final ValueCounts awards;
+    private final ValueCounts nominations;
+    private final int bestPictureCount;
+    private final int minReferences;
+    private final int maxReferences;
+    private final long sumReferences;
+
+    private FilmFacets(final Collector collector) {
+        this.count = collector.count;
+        this.years = new ValueCounts(collector.yearIndex, collector.yearCounts);
+        this.awards = new ValueCounts(collector.awardsIndex, collector.awardsCounts);
+        this.nominations = new ValueCounts(collector.nominationsIndex, collector.nominationsCounts);
+        this.bestPictureCount = collector.bestPictureCount;
+        this.minReferences = collector.minReferences;
+        this.maxReferences = collector.maxReferences;
+        this.sumReferences = collector.sumReferences;
+    }
+
+    /**
+     * Number of matching films
+     * @return
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public ValueCounts getYears() {
+        return years;
+    }
+
+    public ValueCounts getAwards() {
+        return awards;
+    }
+
+    public ValueCounts getNominations() {
+        return nominations;
+    }
+
+    public int getBestPictureCount() {
+        return bestPictureCount;
+    }
+
+    /**
+     * Smallest numberOfReferences of the matching films, 0 when there is none
+     * @return
+     */
+    public int getMinReferences() {
+        return count > 0 ? minReferences : 0;
+    }
+
+    /**
+     * Largest numberOfReferences of the matching films, 0 when there is none
+     * @return
+     */
+    public int getMaxReferences() {
+        return count > 0 ? maxReferences : 0;
+    }
+
+    public long getSumReferences() {
+        return sumReferences;
+    }
+
+    /**
+     * Number of matching films per value of one column, in ascending order of the values.
+     * Values without matching films are left out.
+     */
+    public static final class ValueCounts {
+
+        private final int[] values;
+        private final int[] counts;
+
+        private ValueCounts(final BitmapColumnIndex index, final int[] bucketCounts) {
+            int size = 0;
+            for (int bucketCount : bucketCounts) {
+                if (bucketCount > 0) {
+                    size++;
+                }
+            }
+            this.values = new int[size];
+            this.counts = new int[size];
+            int position = 0;
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                if (bucketCounts[bucket] > 0) {
+                    values[position] = index.getValue(bucket);
+                    counts[position++] = bucketCounts[bucket];
+                }
+            }
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        public int getValue(final int position) {
+            return values[position];
+        }
+
+        public int getCount(final int position) {
+            return counts[position];
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values) + '=' + Arrays.toString(counts);
+        }
+    }
+
+    /**
+     * Accumulates the facets of the collected rows in one pass, each row is counted in the bucket
+     * of its value in the bitmap indexes of the columns
+     */
+    static final class Collector {
+
+        private final FilmTable table;
+        private final BitmapColumnIndex yearIndex;
+        private final BitmapColumnIndex awardsIndex;
+        private final BitmapColumnIndex nominationsIndex;
+        private final int[] yearCounts;
+        private final int[] awardsCounts;
+        private final int[] nominationsCounts;
+        private int count;
+        private int bestPictureCount;
+        private int minReferences = Integer.MAX_VALUE;
+        private int maxReferences = Integer.MIN_VALUE;
+        private long sumReferences;
+
+        Collector(final FilmTable table, final BitmapColumnIndex yearIndex, final BitmapColumnIndex awardsIndex,
+                  final BitmapColumnIndex nominationsIndex) {
+            this.table = table;
+            this.yearIndex = yearIndex;
+            this.awardsIndex = awardsIndex;
+            this.nominationsIndex = nominationsIndex;
+            this.yearCounts = new int[yearIndex.getDistinctValueCount()];
+            this.awardsCounts = new int[awardsIndex.getDistinctValueCount()];
+            this.nominationsCounts = new int[nominationsIndex.getDistinctValueCount()];
+        }
+
+        void collect(final int row) {
+            count++;
+            yearCounts[yearIndex.bucketOf(table.getYear(row))]++;
+            awardsCounts[awardsIndex.bucketOf(table.getAwards(row))]++;
+            nominationsCounts[nominationsIndex.bucketOf(table.getNominations(row))]++;
+            if (table.isBestPicture(row)) {
+                bestPictureCount++;
+            }
+            final int references = table.getNumberOfReferences(row);
+            minReferences = Math.min(minReferences, references);
+            maxReferences = Math.max(maxReferences, references);
+            sumReferences += references;
+        }
+
+        FilmFacets build() {
+            return new FilmFacets(this);
+        }
+    }
+}
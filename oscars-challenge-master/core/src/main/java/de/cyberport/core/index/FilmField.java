@@ -0,0 +1,62 @@
+package de.cyberport.core.index;
+
+import de.cyberport.core.constants.OscarConstants;
+
+/**
+ * Film properties that can be requested with the fields parameter. A projection is kept as a bit
+ * mask of the requested fields, so the serializer decides per property with a single bit test.
+ *
+ * @author ritendra_singh
+ *
+ */
+public enum FilmField {
+
+    TITLE(OscarConstants.TITLE),
+    YEAR(OscarConstants.YEAR),
+    AWARDS(OscarConstants.AWARDS),
+    NOMINATIONS(OscarConstants.NOMINATIONS),
+    IS_BEST_PICTURE(OscarConstants.IS_BEST_PICTURE),
+    NUMBER_OF_REFERENCES(OscarConstants.NUMBER_OF_REFERENCES);
+
+    /**
+     * Projection of all the fields, the default when no fields are requested
+     */
+    public static final int ALL = (1 << values().length) - 1;
+
+    private final String parameterValue;
+
+    FilmField(final String parameterValue) {
+        this.parameterValue = parameterValue;
+    }
+
+    public String getParameterValue() {
+        return parameterValue;
+    }
+
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Check if this field is part of the given projection
+     * @param fields
+     * @return
+     */
+    public boolean isIn(final int fields) {
+        return (fields & mask()) != 0;
+    }
+
+    /**
+     * Resolve the field of the given property name
+     * @param name
+     * @return the field, null when there is no such property
+     */
+    public static FilmField fromParameter(final String name) {
+        for (FilmField field : values()) {
+            if (field.parameterValue.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,316 @@
+package de.cyberport.core.index;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Conjunction of the request filters, with every bound parsed once into a primitive.
+ * Unset bounds are open, so that a row is matched with plain comparisons and no branching on
+ * which filters were requested. The title and the title searches are kept case-folded, the way the
+ * title index stores them.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmFilter {
+
+    public static final FilmFilter ALL = builder().build();
+
+    private final String title;
+    private final String titlePrefix;
+    private final String titleContains;
+    private final String titleFuzzy;
+    private final int titleDistance;
+    private final int minYear;
+    private final int maxYear;
+    private final int minAwards;
+    private final int maxAwards;
+    private final int minNominations;
+    private final int maxNominations;
+    private final boolean bestPictureFiltered;
+    private final boolean bestPicture;
+
+    private FilmFilter(final Builder builder) {
+        this.title = builder.title;
+        this.titlePrefix = builder.titlePrefix;
+        this.titleContains = builder.titleContains;
+        this.titleFuzzy = builder.titleFuzzy;
+        this.titleDistance = builder.titleDistance;
+        this.minYear = builder.minYear;
+        this.maxYear = builder.maxYear;
+        this.minAwards = builder.minAwards;
+        this.maxAwards = builder.maxAwards;
+        this.minNominations = builder.minNominations;
+        this.maxNominations = builder.maxNominations;
+        this.bestPictureFiltered = builder.bestPictureFiltered;
+        this.bestPicture = builder.bestPicture;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Check if the film in the given row passes all the filters
+     * @param table
+     * @param row
+     * @return
+     */
+    public boolean matches(final FilmTable table, final int row) {
+        final int year = table.getYear(row);
+        if (year < minYear || year > maxYear) {
+            return false;
+        }
+        final int awards = table.getAwards(row);
+        if (awards < minAwards || awards > maxAwards) {
+            return false;
+        }
+        final int nominations = table.getNominations(row);
+        if (nominations < minNominations || nominations > maxNominations) {
+            return false;
+        }
+        if (bestPictureFiltered && table.isBestPicture(row) != bestPicture) {
+            return false;
+        }
+        if (title != null && !table.getTitle(row).equalsIgnoreCase(title)) {
+            return false;
+        }
+        return !hasTitleSearch() || matchesTitleSearch(TitleIndex.fold(table.getTitle(row)));
+    }
+
+    /**
+     * Check if the case-folded title passes the prefix, substring and fuzzy title searches
+     * @param foldedTitle
+     * @return
+     */
+    boolean matchesTitleSearch(final String foldedTitle) {
+        return (titlePrefix == null || foldedTitle.startsWith(titlePrefix))
+                && (titleContains == null || foldedTitle.contains(titleContains))
+                && (titleFuzzy == null || TitleIndex.isWithinDistance(foldedTitle, titleFuzzy, titleDistance));
+    }
+
+    /**
+     * Copy of this filter without the title searches, to check the other filters on rows already
+     * found by the title search
+     * @return
+     */
+    FilmFilter withoutTitleSearch() {
+        final Builder builder = new Builder();
+        builder.title = title;
+        builder.minYear = minYear;
+        builder.maxYear = maxYear;
+        builder.minAwards = minAwards;
+        builder.maxAwards = maxAwards;
+        builder.minNominations = minNominations;
+        builder.maxNominations = maxNominations;
+        builder.bestPictureFiltered = bestPictureFiltered;
+        builder.bestPicture = bestPicture;
+        return builder.build();
+    }
+
+    /**
+     * Normalized form of the filter, one name=value&amp; pair per bound that is not open
+     * @return
+     */
+    public String toCanonicalString() {
+        final StringBuilder canonical = new StringBuilder();
+        if (title != null) {
+            canonical.append(TITLE).append('=').append(encode(title)).append('&');
+        }
+        if (titlePrefix != null) {
+            canonical.append(TITLE_PREFIX).append('=').append(encode(titlePrefix)).append('&');
+        }
+        if (titleContains != null) {
+            canonical.append(TITLE_CONTAINS).append('=').append(encode(titleContains)).append('&');
+        }
+        if (titleFuzzy != null) {
+            canonical.append(TITLE_FUZZY).append('=').append(encode(titleFuzzy)).append('&');
+            canonical.append(TITLE_DISTANCE).append('=').append(titleDistance).append('&');
+        }
+        appendBound(canonical, MIN_YEAR, minYear, Integer.MIN_VALUE);
+        appendBound(canonical, MAX_YEAR, maxYear, Integer.MAX_VALUE);
+        appendBound(canonical, MIN_AWARDS, minAwards, Integer.MIN_VALUE);
+        appendBound(canonical, MAX_AWARDS, maxAwards, Integer.MAX_VALUE);
+        // nominations are only filtered by exact value, the upper bound differs only for contradicting values
+        appendBound(canonical, NOMINATIONS, minNominations, Integer.MIN_VALUE);
+        if (maxNominations != minNominations) {
+            appendBound(canonical, NOMINATIONS, maxNominations, Integer.MAX_VALUE);
+        }
+        if (bestPictureFiltered) {
+            canonical.append(IS_BEST_PICTURE).append('=').append(bestPicture).append('&');
+        }
+        return canonical.toString();
+    }
+
+    private static void appendBound(final StringBuilder canonical, final String name, final int value, final int open) {
+        if (value != open) {
+            canonical.append(name).append('=').append(value).append('&');
+        }
+    }
+
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    String getTitle() {
+        return title;
+    }
+
+    String getTitlePrefix() {
+        return titlePrefix;
+    }
+
+    String getTitleContains() {
+        return titleContains;
+    }
+
+    String getTitleFuzzy() {
+        return titleFuzzy;
+    }
+
+    int getTitleDistance() {
+        return titleDistance;
+    }
+
+    boolean hasTitleSearch() {
+        return titlePrefix != null || titleContains != null || titleFuzzy != null;
+    }
+
+    boolean hasYearBounds() {
+        return minYear != Integer.MIN_VALUE || maxYear != Integer.MAX_VALUE;
+    }
+
+    boolean hasAwardsBounds() {
+        return minAwards != Integer.MIN_VALUE || maxAwards != Integer.MAX_VALUE;
+    }
+
+    boolean hasNominationsBounds() {
+        return minNominations != Integer.MIN_VALUE || maxNominations != Integer.MAX_VALUE;
+    }
+
+    int getMinYear() {
+        return minYear;
+    }
+
+    int getMaxYear() {
+        return maxYear;
+    }
+
+    int getMinAwards() {
+        return minAwards;
+    }
+
+    int getMaxAwards() {
+        return maxAwards;
+    }
+
+    int getMinNominations() {
+        return minNominations;
+    }
+
+    int getMaxNominations() {
+        return maxNominations;
+    }
+
+    boolean isBestPictureFiltered() {
+        return bestPictureFiltered;
+    }
+
+    boolean getBestPicture() {
+        return bestPicture;
+    }
+
+    /**
+     * Collects the filters of one query, every bound narrows the already given ones.
+     */
+    public static final class Builder {
+
+        private String title;
+        private String titlePrefix;
+        private String titleContains;
+        private String titleFuzzy;
+        private int titleDistance;
+        private int minYear = Integer.MIN_VALUE;
+        private int maxYear = Integer.MAX_VALUE;
+        private int minAwards = Integer.MIN_VALUE;
+        private int maxAwards = Integer.MAX_VALUE;
+        private int minNominations = Integer.MIN_VALUE;
+        private int maxNominations = Integer.MAX_VALUE;
+        private boolean bestPictureFiltered;
+        private boolean bestPicture;
+
+        public Builder title(final String title) {
+            this.title = title != null ? TitleIndex.fold(title) : null;
+            return this;
+        }
+
+        public Builder titlePrefix(final String titlePrefix) {
+            this.titlePrefix = titlePrefix != null ? TitleIndex.fold(titlePrefix) : null;
+            return this;
+        }
+
+        public Builder titleContains(final String titleContains) {
+            this.titleContains = titleContains != null ? TitleIndex.fold(titleContains) : null;
+            return this;
+        }
+
+        /**
+         * Only keep films whose title is within the given edit distance of the given one, ignoring case
+         * @param titleFuzzy
+         * @param titleDistance maximum number of inserted, deleted or replaced characters
+         * @return
+         */
+        public Builder titleFuzzy(final String titleFuzzy, final int titleDistance) {
+            this.titleFuzzy = titleFuzzy != null ? TitleIndex.fold(titleFuzzy) : null;
+            this.titleDistance = titleDistance;
+            return this;
+        }
+
+        public Builder year(final int year) {
+            return minYear(year).maxYear(year);
+        }
+
+        public Builder minYear(final int minYear) {
+            this.minYear = Math.max(this.minYear, minYear);
+            return this;
+        }
+
+        public Builder maxYear(final int maxYear) {
+            this.maxYear = Math.min(this.maxYear, maxYear);
+            return this;
+        }
+
+        public Builder minAwards(final int minAwards) {
+            this.minAwards = Math.max(this.minAwards, minAwards);
+            return this;
+        }
+
+        public Builder maxAwards(final int maxAwards) {
+            this.maxAwards = Math.min(this.maxAwards, maxAwards);
+            return this;
+        }
+
+        public Builder nominations(final int nominations) {
+            this.minNominations = Math.max(this.minNominations, nominations);
+            this.maxNominations = Math.min(this.maxNominations, nominations);
+            return this;
+        }
+
+        public Builder bestPicture(final boolean bestPicture) {
+            this.bestPictureFiltered = true;
+            this.bestPicture = bestPicture;
+            return this;
+        }
+
+        public FilmFilter build() {
+            return new FilmFilter(this);
+        }
+    }
+}
@@ -0,0 +1,626 @@
+package de.cyberport.core.index;
+
+import org.apache.sling.api.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable in-memory snapshot of the films below one film container.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilmIndex.class);
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private final String containerPath;
+    private final long version;
+    private final long referencesVersion;
+    private final FilmTable table;
+    private final int[][] sortOrders;
+    private final int[][] sortRanks;
+    private final BitmapColumnIndex yearIndex;
+    private final BitmapColumnIndex awardsIndex;
+    private final BitmapColumnIndex nominationsIndex;
+    private final TitleIndex titleIndex;
+    private final QueryPlanner planner;
+    private final ParallelScan parallelScan;
+
+    private FilmIndex(final String containerPath, final FilmTable table, final ParallelScan parallelScan) {
+        this(containerPath, table, sortOrders(table), parallelScan);
+    }
+
+    /**
+     * Index of the table with the given orders of the sort keys, e.g. read from a {@link FilmSnapshot}
+     */
+    FilmIndex(final String containerPath, final FilmTable table, final int[][] sortOrders,
+              final ParallelScan parallelScan) {
+        this.containerPath = containerPath;
+        this.version = VERSIONS.incrementAndGet();
+        this.referencesVersion = version;
+        this.table = table;
+        this.sortOrders = sortOrders;
+        this.sortRanks = new int[SortKey.values().length][];
+        for (SortKey sortKey : SortKey.values()) {
+            final int[] order = sortOrders[sortKey.ordinal()];
+            final int[] ranks = new int[order.length];
+            for (int position = 0; position < order.length; position++) {
+                ranks[order[position]] = position;
+            }
+            sortRanks[sortKey.ordinal()] = ranks;
+        }
+        this.yearIndex = BitmapColumnIndex.build(table.size(), table::getYear);
+        this.awardsIndex = BitmapColumnIndex.build(table.size(), table::getAwards);
+        this.nominationsIndex = BitmapColumnIndex.build(table.size(), table::getNominations);
+        this.titleIndex = TitleIndex.build(table);
+        this.planner = new QueryPlanner(table.size(), yearIndex.getStatistics(), awardsIndex.getStatistics(),
+                nominationsIndex.getStatistics(), table.getBestPictures().cardinality(), table.getDistinctTitleCount(),
+                titleIndex);
+        this.parallelScan = parallelScan;
+    }
+
+    private FilmIndex(final FilmIndex index, final FilmTable table) {
+        this.containerPath = index.containerPath;
+        this.version = index.version;
+        this.referencesVersion = VERSIONS.incrementAndGet();
+        this.table = table;
+        this.sortOrders = index.sortOrders;
+        this.sortRanks = index.sortRanks;
+        this.yearIndex = index.yearIndex;
+        this.awardsIndex = index.awardsIndex;
+        this.nominationsIndex = index.nominationsIndex;
+        this.titleIndex = index.titleIndex;
+        this.planner = index.planner;
+        this.parallelScan = index.parallelScan;
+    }
+
+    /**
+     * Build the index from the children of the given container resource
+     * @param container
+     * @return
+     */
+    public static FilmIndex build(final Resource container) {
+        return build(container, null);
+    }
+
+    /**
+     * Build the index from the children of the given container resource, long walks over its sort
+     * orders are split on the given parallel scan
+     * @param container
+     * @param parallelScan null to walk on the request thread only
+     * @return
+     */
+    public static FilmIndex build(final Resource container, final ParallelScan parallelScan) {
+        final FilmTable table = FilmTable.fromContainer(container);
+
+        LOGGER.info("Built film index for {} with {} entries", container.getPath(), table.size());
+        return new FilmIndex(container.getPath(), table, parallelScan);
+    }
+
+    /**
+     * Copy of this index with the numberOfReferences of the given container children updated.
+     * None of the sort orders or lookup indexes depend on the references, so they are shared and
+     * the copy keeps the version of this index, only its references version changes.
+     * Children that are not part of the index are ignored.
+     * @param referencesByName numberOfReferences per name of the container child
+     * @return this index when none of the children is part of it
+     */
+    public FilmIndex withNumberOfReferences(final Map<String, Integer> referencesByName) {
+        final Map<Integer, Integer> referencesByRow = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : referencesByName.entrySet()) {
+            final int row = table.getRow(entry.getKey());
+            if (row >= 0 && entry.getValue() != null && table.getNumberOfReferences(row) != entry.getValue()) {
+                referencesByRow.put(row, entry.getValue());
+            }
+        }
+        if (referencesByRow.isEmpty()) {
+            return this;
+        }
+        return new FilmIndex(this, table.withNumberOfReferences(referencesByRow));
+    }
+
+    /**
+     * Collect the rows that pass the filter by walking the precomputed order of the sort key
+     * @param filter
+     * @param sortKey
+     * @return
+     */
+    public int[] select(final FilmFilter filter, final SortKey sortKey) {
+        return select(filter, sortKey, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Collect the first rows that pass the filter in the precomputed order of the sort key.
+     *
+     * The access path is chosen by the {@link QueryPlanner} from the column statistics. A title
+     * lookup only checks the other filters on the few rows with that title. The rows of a prefix,
+     * substring or fuzzy title search are found in the title index, see {@link TitleIndex}, and
+     * together with selective year, awards, nominations and best picture filters they are answered
+     * as bitmaps, most selective first. A small candidate set is then ordered by the precomputed ranks of its rows, otherwise
+     * the order of the sort key is walked, testing each row against the candidates, until the limit
+     * is reached. Without a selective filter the order is scanned right away. Walks over many
+     * positions of large containers are split into segments tested concurrently, see {@link ParallelScan}.
+     * @param filter
+     * @param sortKey
+     * @param limit
+     * @return
+     */
+    public int[] select(final FilmFilter filter, final SortKey sortKey, final int limit) {
+        return select(filter, sortKey, limit, 0);
+    }
+
+    /**
+     * Collect the first rows that pass the filter in the order of the sort key, starting at the
+     * given position of that order. Pages are resumed this way without reading the rows before.
+     * @param filter
+     * @param sortKey
+     * @param limit
+     * @param fromPosition first position in the order of the sort key, see {@link #resume(FilmCursor)}
+     * @return
+     */
+    public int[] select(final FilmFilter filter, final SortKey sortKey, final int limit, final int fromPosition) {
+        final int from = Math.max(0, Math.min(fromPosition, table.size()));
+        final int maxRows = Math.max(0, Math.min(limit, table.size() - from));
+        final QueryPlan plan = planner.plan(filter);
+        switch (plan.getAccessPath()) {
+            case EMPTY:
+                return new int[0];
+            case TITLE_LOOKUP:
+                return lookupTitle(filter, sortKey, maxRows, from);
+            case SCAN:
+                return walk(filter, null, plan.isResidualCheck(), sortKey, maxRows, from, plan.getEstimatedRows());
+            default:
+                break;
+        }
+
+        final BitSet candidates = candidates(filter, plan.getIndexedPredicates());
+        final int candidateCount = candidates.cardinality();
+        final FilmFilter residual = residualFilter(filter, plan);
+        return sortsCandidates(candidateCount, maxRows)
+                ? sortCandidates(residual, candidates, candidateCount, plan.isResidualCheck(), sortKey, maxRows, from)
+                : walk(residual, candidates, plan.isResidualCheck(), sortKey, maxRows, from, candidateCount);
+    }
+
+    /**
+     * Number of rows that {@link #select(FilmFilter, SortKey, int, int)} tested to return the given
+     * rows: the rows with the title of a lookup, the candidates that were sorted, or the positions of
+     * the order that were walked up to the last returned row. The access path is planned again, so
+     * it is meant for diagnostics rather than for every query.
+     * @param filter
+     * @param sortKey
+     * @param limit
+     * @param fromPosition
+     * @param rows the rows returned by the selection with the same arguments
+     * @return
+     */
+    public int getExaminedRows(final FilmFilter filter, final SortKey sortKey, final int limit, final int fromPosition,
+                               final int[] rows) {
+        final int from = Math.max(0, Math.min(fromPosition, table.size()));
+        final int maxRows = Math.max(0, Math.min(limit, table.size() - from));
+        final QueryPlan plan = planner.plan(filter);
+        switch (plan.getAccessPath()) {
+            case EMPTY:
+                return 0;
+            case TITLE_LOOKUP:
+                return titleIndex.lookupFolded(filter.getTitle()).length;
+            case SCAN:
+                return walked(sortKey, maxRows, from, rows);
+            default:
+                break;
+        }
+        final int candidateCount = candidates(filter, plan.getIndexedPredicates()).cardinality();
+        return sortsCandidates(candidateCount, maxRows) ? candidateCount : walked(sortKey, maxRows, from, rows);
+    }
+
+    /**
+     * Collect the rows of several filters over the same sort key. Filters with a selective
+     * predicate are answered from the indexes one by one, all filters that have to scan the order
+     * of the sort key share one walk of it, which ends as soon as every one of them is complete.
+     * @param filters
+     * @param sortKey
+     * @param limits limit of each filter
+     * @param fromPositions start position of each filter, see {@link #select(FilmFilter, SortKey, int, int)}
+     * @return the rows of each filter, in the order of the filters
+     */
+    public int[][] select(final FilmFilter[] filters, final SortKey sortKey, final int[] limits, final int[] fromPositions) {
+        final int[][] results = new int[filters.length][];
+        final int[] scans = new int[filters.length];
+        final boolean[] residualChecks = new boolean[filters.length];
+        int scanCount = 0;
+        for (int i = 0; i < filters.length; i++) {
+            final QueryPlan plan = planner.plan(filters[i]);
+            if (plan.getAccessPath() == QueryPlan.AccessPath.SCAN) {
+                residualChecks[scanCount] = plan.isResidualCheck();
+                scans[scanCount++] = i;
+            } else {
+                results[i] = select(filters[i], sortKey, limits[i], fromPositions[i]);
+            }
+        }
+        if (scanCount == 1) {
+            results[scans[0]] = select(filters[scans[0]], sortKey, limits[scans[0]], fromPositions[scans[0]]);
+        } else if (scanCount > 1) {
+            walkShared(filters, Arrays.copyOf(scans, scanCount), residualChecks, sortKey, limits, fromPositions, results);
+        }
+        return results;
+    }
+
+    /**
+     * Aggregate the films that pass the filter in one pass over the rows of its access path,
+     * without ordering or collecting them
+     * @param filter
+     * @return
+     */
+    public FilmFacets facets(final FilmFilter filter) {
+        final FilmFacets.Collector collector = new FilmFacets.Collector(table, yearIndex, awardsIndex, nominationsIndex);
+        final QueryPlan plan = planner.plan(filter);
+        final boolean residualCheck = plan.isResidualCheck();
+        switch (plan.getAccessPath()) {
+            case EMPTY:
+                break;
+            case TITLE_LOOKUP:
+                for (int row : titleIndex.lookupFolded(filter.getTitle())) {
+                    if (filter.matches(table, row)) {
+                        collector.collect(row);
+                    }
+                }
+                break;
+            case SCAN:
+                for (int row = 0; row < table.size(); row++) {
+                    if (!residualCheck || filter.matches(table, row)) {
+                        collector.collect(row);
+                    }
+                }
+                break;
+            default:
+                final BitSet candidates = candidates(filter, plan.getIndexedPredicates());
+                final FilmFilter residual = residualFilter(filter, plan);
+                for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                    if (!residualCheck || residual.matches(table, row)) {
+                        collector.collect(row);
+                    }
+                }
+                break;
+        }
+        return collector.build();
+    }
+
+    /**
+     * Position in the order of the cursor's sort key right after the film of the cursor. When that
+     * film was removed or its sort value changed since, the position after all films with the
+     * cursor's sort value is used.
+     * @param cursor
+     * @return
+     */
+    public int resume(final FilmCursor cursor) {
+        final SortKey sortKey = cursor.getSortKey();
+        final int row = table.getRow(cursor.getName());
+        if (row >= 0 && sortKey.compareToValue(table, row, cursor.getValue()) == 0) {
+            return sortRanks[sortKey.ordinal()][row] + 1;
+        }
+
+        final int[] order = sortOrders[sortKey.ordinal()];
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (sortKey.compareToValue(table, order[middle], cursor.getValue()) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Plan of the given filter, as {@link #select(FilmFilter, SortKey, int)} evaluates it
+     * @param filter
+     * @return
+     */
+    public QueryPlan plan(final FilmFilter filter) {
+        return planner.plan(filter);
+    }
+
+    /**
+     * Rows of the table in the order of the given sort key
+     * @param sortKey
+     * @return
+     */
+    public int[] getSortOrder(final SortKey sortKey) {
+        return sortOrders[sortKey.ordinal()].clone();
+    }
+
+    public String getContainerPath() {
+        return containerPath;
+    }
+
+    /**
+     * Unique version of this snapshot, every (re)build of an index gets a new one
+     * @return
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Version of the numberOfReferences column, it changes with every references update while
+     * {@link #getVersion()} only changes when the index is rebuilt
+     * @return
+     */
+    public long getReferencesVersion() {
+        return referencesVersion;
+    }
+
+    public FilmTable getTable() {
+        return table;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Intersect the bitmaps of the indexed predicates in the given order, stop as soon as no row is left
+     * @param filter
+     * @param predicates
+     * @return
+     */
+    private BitSet candidates(final FilmFilter filter, final List<QueryPlan.Predicate> predicates) {
+        BitSet candidates = null;
+        for (QueryPlan.Predicate predicate : predicates) {
+            candidates = intersect(candidates, bitmap(filter, predicate));
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    private BitSet bitmap(final FilmFilter filter, final QueryPlan.Predicate predicate) {
+        switch (predicate) {
+            case TITLE_SEARCH:
+                return titleIndex.search(filter);
+            case YEAR:
+                return yearIndex.range(filter.getMinYear(), filter.getMaxYear());
+            case AWARDS:
+                return awardsIndex.range(filter.getMinAwards(), filter.getMaxAwards());
+            case NOMINATIONS:
+                return nominationsIndex.range(filter.getMinNominations(), filter.getMaxNominations());
+            case BEST_PICTURE:
+                final BitSet bestPictures = (BitSet) table.getBestPictures().clone();
+                if (!filter.getBestPicture()) {
+                    bestPictures.flip(0, table.size());
+                }
+                return bestPictures;
+            default:
+                throw new IllegalArgumentException("No bitmap index for " + predicate);
+        }
+    }
+
+    /**
+     * Filter to check on the candidates of the plan, the rows of a title search are exact and need no check
+     */
+    private static FilmFilter residualFilter(final FilmFilter filter, final QueryPlan plan) {
+        return plan.getIndexedPredicates().contains(QueryPlan.Predicate.TITLE_SEARCH) ? filter.withoutTitleSearch() : filter;
+    }
+
+    private static BitSet intersect(final BitSet candidates, final BitSet bitmap) {
+        if (candidates == null) {
+            return bitmap;
+        }
+        candidates.and(bitmap);
+        return candidates;
+    }
+
+    /**
+     * Sorting the candidates is chosen when it is cheaper than walking the order of the sort key
+     * until enough of them are found
+     */
+    private boolean sortsCandidates(final int candidateCount, final int maxRows) {
+        final long walkCost = candidateCount == 0 ? 0 : Math.min(table.size(), (long) maxRows * table.size() / candidateCount);
+        final long sortCost = (long) candidateCount * (32 - Integer.numberOfLeadingZeros(candidateCount));
+        return sortCost < walkCost;
+    }
+
+    /**
+     * Positions of the order of the sort key a walk passed to collect the given rows, it stops at
+     * the last one when the limit is reached
+     */
+    private int walked(final SortKey sortKey, final int maxRows, final int from, final int[] rows) {
+        if (rows.length < maxRows) {
+            return table.size() - from;
+        }
+        return rows.length == 0 ? 0 : sortRanks[sortKey.ordinal()][rows[rows.length - 1]] - from + 1;
+    }
+
+    /**
+     * Walk the order of the sort key and keep the rows that are candidates and, with the residual
+     * check, match the filter. The walk is split when the expected matches are sparse enough for it
+     * to test more positions than the threshold of the parallel scan.
+     */
+    private int[] walk(final FilmFilter filter, final BitSet candidates, final boolean residualCheck,
+                       final SortKey sortKey, final int maxRows, final int from, final long expectedMatches) {
+        final int[] order = sortOrders[sortKey.ordinal()];
+        if (parallelScan != null && maxRows > 0
+                && parallelScan.isParallel(expectedWalk(order.length - from, maxRows, expectedMatches))) {
+            final int[] rows = parallelScan.walk(order, from, maxRows, row -> (candidates == null || candidates.get(row))
+                    && (!residualCheck || filter.matches(table, row)));
+            if (rows != null) {
+                return rows;
+            }
+        }
+        final int[] rows = new int[maxRows];
+        int count = 0;
+        for (int position = from; position < order.length && count < maxRows; position++) {
+            final int row = order[position];
+            if ((candidates == null || candidates.get(row)) && (!residualCheck || filter.matches(table, row))) {
+                rows[count++] = row;
+            }
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Positions a walk is expected to test until it found maxRows of the expected matches, all of
+     * the remaining ones when no match is expected
+     */
+    private static long expectedWalk(final int remaining, final int maxRows, final long expectedMatches) {
+        if (expectedMatches <= 0) {
+            return remaining;
+        }
+        return Math.min(remaining, (long) maxRows * remaining / expectedMatches);
+    }
+
+    /**
+     * Walk the order of the sort key once for all the given scans, each row is tested against every
+     * scan that has not reached its limit yet
+     */
+    private void walkShared(final FilmFilter[] filters, final int[] scans, final boolean[] residualChecks,
+                            final SortKey sortKey, final int[] limits, final int[] fromPositions, final int[][] results) {
+        final int[] order = sortOrders[sortKey.ordinal()];
+        final int[][] rows = new int[scans.length][];
+        final int[] counts = new int[scans.length];
+        final int[] froms = new int[scans.length];
+        int start = order.length;
+        int open = 0;
+        for (int scan = 0; scan < scans.length; scan++) {
+            froms[scan] = Math.max(0, Math.min(fromPositions[scans[scan]], order.length));
+            rows[scan] = new int[Math.max(0, Math.min(limits[scans[scan]], order.length - froms[scan]))];
+            if (rows[scan].length > 0) {
+                start = Math.min(start, froms[scan]);
+                open++;
+            }
+        }
+
+        for (int position = start; position < order.length && open > 0; position++) {
+            final int row = order[position];
+            for (int scan = 0; scan < scans.length; scan++) {
+                if (counts[scan] < rows[scan].length && position >= froms[scan]
+                        && (!residualChecks[scan] || filters[scans[scan]].matches(table, row))) {
+                    rows[scan][counts[scan]++] = row;
+                    if (counts[scan] == rows[scan].length) {
+                        open--;
+                    }
+                }
+            }
+        }
+
+        for (int scan = 0; scan < scans.length; scan++) {
+            results[scans[scan]] = counts[scan] == rows[scan].length ? rows[scan] : Arrays.copyOf(rows[scan], counts[scan]);
+        }
+    }
+
+    /**
+     * Look up the rows with the title of the filter and check the other filters on them only
+     */
+    private int[] lookupTitle(final FilmFilter filter, final SortKey sortKey, final int maxRows, final int from) {
+        final int[] titleRows = titleIndex.lookupFolded(filter.getTitle());
+        final int[] rows = new int[titleRows.length];
+        int count = 0;
+        for (int row : titleRows) {
+            if (filter.matches(table, row)) {
+                rows[count++] = row;
+            }
+        }
+        return orderByRank(rows, count, sortKey, maxRows, from);
+    }
+
+    /**
+     * Order the candidates that pass the residual check by the rank of their rows in the order of the sort key
+     */
+    private int[] sortCandidates(final FilmFilter filter, final BitSet candidates, final int candidateCount,
+                                 final boolean residualCheck, final SortKey sortKey, final int maxRows,
+                                 final int from) {
+        final int[] rows = new int[candidateCount];
+        int count = 0;
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+            if (!residualCheck || filter.matches(table, row)) {
+                rows[count++] = row;
+            }
+        }
+        return orderByRank(rows, count, sortKey, maxRows, from);
+    }
+
+    /**
+     * Sort the first count rows by their rank in the order of the sort key and keep at most maxRows
+     * starting at the given rank
+     */
+    private int[] orderByRank(final int[] rows, final int count, final SortKey sortKey, final int maxRows,
+                              final int from) {
+        final int[] order = sortOrders[sortKey.ordinal()];
+        final int[] ranks = sortRanks[sortKey.ordinal()];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            final int rank = ranks[rows[i]];
+            if (rank >= from) {
+                rows[kept++] = rank;
+            }
+        }
+        Arrays.sort(rows, 0, kept);
+
+        final int[] result = new int[Math.min(kept, maxRows)];
+        for (int position = 0; position < result.length; position++) {
+            result[position] = order[rows[position]];
+        }
+        return result;
+    }
+
+    private static int[][] sortOrders(final FilmTable table) {
+        final int[] titleRanks = titleRanks(table);
+        final int[][] sortOrders = new int[SortKey.values().length][];
+        for (SortKey sortKey : SortKey.values()) {
+            sortOrders[sortKey.ordinal()] = sortOrder(table, sortKey, titleRanks);
+        }
+        return sortOrders;
+    }
+
+    /**
+     * Sort the rows by their rank value in the upper half of a long and the row in its lower half,
+     * so that ties keep the row order and no row is boxed
+     */
+    private static int[] sortOrder(final FilmTable table, final SortKey sortKey, final int[] titleRanks) {
+        final long[] keys = new long[table.size()];
+        for (int row = 0; row < keys.length; row++) {
+            keys[row] = (long) sortKey.getRank(table, titleRanks, row) << Integer.SIZE | row;
+        }
+        Arrays.sort(keys);
+
+        final int[] order = new int[keys.length];
+        for (int position = 0; position < keys.length; position++) {
+            order[position] = (int) keys[position];
+        }
+        return order;
+    }
+
+    /**
+     * Position of every distinct title in the ascending order of the titles, equal titles share their position
+     */
+    private static int[] titleRanks(final FilmTable table) {
+        final String[] titles = new String[table.getDistinctTitleCount()];
+        for (int titleId = 0; titleId < titles.length; titleId++) {
+            titles[titleId] = table.getDictionaryTitle(titleId);
+        }
+        final String[] sorted = titles.clone();
+        Arrays.sort(sorted);
+
+        final int[] ranks = new int[titles.length];
+        for (int titleId = 0; titleId < titles.length; titleId++) {
+            int rank = Arrays.binarySearch(sorted, titles[titleId]);
+            while (rank > 0 && sorted[rank - 1].equals(titles[titleId])) {
+                rank--;
+            }
+            ranks[titleId] = rank;
+        }
+        return ranks;
+    }
+}
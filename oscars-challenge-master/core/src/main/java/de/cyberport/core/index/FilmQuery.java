@@ -0,0 +1,343 @@
+package de.cyberport.core.index;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Immutable, validated film query: the filter with primitive bounds, the sort key, the limit, the cursor
+ * and the projection of the requested fields.
+ * Queries are compiled once from the request parameters and can be reused for any request with
+ * the same parameters. Equivalent parameters, e.g. year=2019 and minYear=2019&amp;maxYear=2019,
+ * compile to queries with the same canonical string. Recently compiled queries are kept in a small
+ * cache keyed by the raw parameter values, so repeated requests skip parsing altogether. The cache
+ * has one slot per hash of the key and a newly compiled query replaces the one in its slot, so
+ * that concurrent requests read and fill it without any lock.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmQuery {
+
+    /**
+     * Request parameters that are part of a query, in the order in which they are read
+     */
+    public static final String[] PARAMETERS = {
+            TITLE, TITLE_PREFIX, TITLE_CONTAINS, TITLE_FUZZY, TITLE_DISTANCE,
+            YEAR, MIN_YEAR, MAX_YEAR, MIN_AWARDS, MAX_AWARDS, NOMINATIONS, IS_BEST_PICTURE, SORT_BY, LIMIT, CURSOR, FIELDS
+    };
+
+    /**
+     * Request parameters that are part of the filter of a query, all of {@link #PARAMETERS} but sortBy, limit,
+     * cursor and fields
+     */
+    public static final String[] FILTER_PARAMETERS = {
+            TITLE, TITLE_PREFIX, TITLE_CONTAINS, TITLE_FUZZY, TITLE_DISTANCE,
+            YEAR, MIN_YEAR, MAX_YEAR, MIN_AWARDS, MAX_AWARDS, NOMINATIONS, IS_BEST_PICTURE
+    };
+
+    /**
+     * Edit distance of titleFuzzy when no titleDistance is requested
+     */
+    public static final int DEFAULT_TITLE_DISTANCE = 2;
+
+    private static final int COMPILED_QUERIES = 512;
+
+    private static final Set<String> FILTER_PARAMETER_NAMES = new HashSet<>(Arrays.asList(FILTER_PARAMETERS));
+
+    private static final AtomicReferenceArray<CompiledQuery> compiledQueries =
+            new AtomicReferenceArray<>(COMPILED_QUERIES);
+
+    private final FilmFilter filter;
+    private final SortKey sortKey;
+    private final int limit;
+    private final FilmCursor cursor;
+    private final int fields;
+    private final String canonicalString;
+    private final String shape;
+
+    private FilmQuery(final FilmFilter filter, final SortKey sortKey, final int limit, final FilmCursor cursor,
+                      final int fields) {
+        this.filter = filter;
+        this.sortKey = sortKey;
+        this.limit = limit;
+        this.cursor = cursor;
+        this.fields = fields;
+        this.canonicalString = filter.toCanonicalString()
+                + SORT_BY + '=' + sortKey.getParameterValue()
+                + (limit != Integer.MAX_VALUE ? '&' + LIMIT + '=' + limit : "")
+                + (cursor != null ? '&' + CURSOR + '=' + cursor.encode() : "")
+                + (fields != FilmField.ALL ? '&' + FIELDS + '=' + fieldsToString(fields) : "");
+        this.shape = shape(filter, sortKey);
+    }
+
+    /**
+     * Retrieve the compiled query of the given parameters, parse it on the first use
+     * @param parameters lookup of the parameter values by name, returning null for missing parameters
+     * @return
+     * @throws InvalidQueryException if a number, the limit, the cursor or a field is invalid
+     */
+    public static FilmQuery compile(final Function<String, String> parameters) {
+        final String key = getParameterKey(parameters);
+        final int slot = (key.hashCode() ^ key.hashCode() >>> 16) & (COMPILED_QUERIES - 1);
+        final CompiledQuery compiled = compiledQueries.get(slot);
+        if (compiled != null && compiled.key.equals(key)) {
+            return compiled.query;
+        }
+        final FilmQuery query = parse(parameters);
+        compiledQueries.lazySet(slot, new CompiledQuery(key, query));
+        return query;
+    }
+
+    /**
+     * Retrieve the compiled filter of the given parameters, sortBy, limit, cursor and fields are ignored
+     * @param parameters lookup of the parameter values by name, returning null for missing parameters
+     * @return
+     * @throws InvalidQueryException if a number of the filter is invalid
+     */
+    public static FilmFilter compileFilter(final Function<String, String> parameters) {
+        return compile(name -> FILTER_PARAMETER_NAMES.contains(name) ? parameters.apply(name) : null).getFilter();
+    }
+
+    /**
+     * Parse and validate the query parameters
+     * @param parameters lookup of the parameter values by name, returning null for missing parameters
+     * @return
+     * @throws InvalidQueryException if a number, the limit, the cursor or a field is invalid
+     */
+    public static FilmQuery parse(final Function<String, String> parameters) {
+        final FilmFilter.Builder filter = FilmFilter.builder();
+
+        final String title = parameters.apply(TITLE);
+        if (title != null && !title.isEmpty()) {
+            filter.title(title);
+        }
+
+        final String titlePrefix = parameters.apply(TITLE_PREFIX);
+        if (titlePrefix != null && !titlePrefix.isEmpty()) {
+            filter.titlePrefix(titlePrefix);
+        }
+
+        final String titleContains = parameters.apply(TITLE_CONTAINS);
+        if (titleContains != null && !titleContains.isEmpty()) {
+            filter.titleContains(titleContains);
+        }
+
+        final String titleFuzzy = parameters.apply(TITLE_FUZZY);
+        if (titleFuzzy != null && !titleFuzzy.isEmpty()) {
+            int titleDistance = DEFAULT_TITLE_DISTANCE;
+            final String titleDistanceValue = parameters.apply(TITLE_DISTANCE);
+            if (titleDistanceValue != null && !titleDistanceValue.trim().isEmpty()) {
+                titleDistance = parseInt(TITLE_DISTANCE, titleDistanceValue);
+                if (titleDistance < 0 || titleDistance > TitleIndex.MAX_DISTANCE) {
+                    throw new InvalidQueryException(TITLE_DISTANCE, titleDistanceValue);
+                }
+            }
+            filter.titleFuzzy(titleFuzzy, titleDistance);
+        }
+
+        final String year = parameters.apply(YEAR);
+        if (year != null && !year.isEmpty()) {
+            filter.year(parseInt(YEAR, year));
+        }
+
+        final String minYear = parameters.apply(MIN_YEAR);
+        if (minYear != null && !minYear.isEmpty()) {
+            filter.minYear(parseInt(MIN_YEAR, minYear));
+        }
+
+        final String maxYear = parameters.apply(MAX_YEAR);
+        if (maxYear != null && !maxYear.isEmpty()) {
+            filter.maxYear(parseInt(MAX_YEAR, maxYear));
+        }
+
+        final String minAwards = parameters.apply(MIN_AWARDS);
+        if (minAwards != null && !minAwards.isEmpty()) {
+            filter.minAwards(parseInt(MIN_AWARDS, minAwards));
+        }
+
+        final String maxAwards = parameters.apply(MAX_AWARDS);
+        if (maxAwards != null && !maxAwards.isEmpty()) {
+            filter.maxAwards(parseInt(MAX_AWARDS, maxAwards));
+        }
+
+        final String nominations = parameters.apply(NOMINATIONS);
+        if (nominations != null && !nominations.isEmpty()) {
+            filter.nominations(parseInt(NOMINATIONS, nominations));
+        }
+
+        final String isBestPicture = parameters.apply(IS_BEST_PICTURE);
+        if (isBestPicture != null && !isBestPicture.isEmpty()) {
+            filter.bestPicture(Boolean.parseBoolean(isBestPicture));
+        }
+
+        int limit = Integer.MAX_VALUE;
+        final String limitValue = parameters.apply(LIMIT);
+        if (limitValue != null && !limitValue.trim().isEmpty()) {
+            limit = parseInt(LIMIT, limitValue);
+            if (limit < 0) {
+                throw new InvalidQueryException(LIMIT, limitValue);
+            }
+        }
+
+        final SortKey sortKey = SortKey.fromParameter(parameters.apply(SORT_BY));
+
+        FilmCursor cursor = null;
+        final String cursorValue = parameters.apply(CURSOR);
+        if (cursorValue != null && !cursorValue.isEmpty()) {
+            cursor = FilmCursor.decode(cursorValue);
+            if (cursor.getSortKey() != sortKey) {
+                throw new InvalidQueryException(CURSOR, cursorValue);
+            }
+        }
+
+        int fields = FilmField.ALL;
+        final String fieldsValue = parameters.apply(FIELDS);
+        if (fieldsValue != null && !fieldsValue.isEmpty()) {
+            fields = parseFields(fieldsValue);
+        }
+
+        return new FilmQuery(filter.build(), sortKey, limit, cursor, fields);
+    }
+
+    public FilmFilter getFilter() {
+        return filter;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * Maximum number of result rows, {@link Integer#MAX_VALUE} when no limit was requested
+     * @return
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Position to resume from, null for the first page
+     * @return
+     */
+    public FilmCursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Projection of the requested fields, see {@link FilmField#isIn(int)}
+     * @return
+     */
+    public int getFields() {
+        return fields;
+    }
+
+    /**
+     * Normalized form of the query, equal for all queries that select the same rows in the same order
+     * @return
+     */
+    public String getCanonicalString() {
+        return canonicalString;
+    }
+
+    /**
+     * Combination of the filtered properties and the sort key, e.g. year,awards;sortBy=title, to group
+     * queries by their kind regardless of the filtered values
+     * @return
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    @Override
+    public String toString() {
+        return canonicalString;
+    }
+
+    private static String shape(final FilmFilter filter, final SortKey sortKey) {
+        final StringBuilder shape = new StringBuilder();
+        appendShape(shape, filter.getTitle() != null, TITLE);
+        appendShape(shape, filter.getTitlePrefix() != null, TITLE_PREFIX);
+        appendShape(shape, filter.getTitleContains() != null, TITLE_CONTAINS);
+        appendShape(shape, filter.getTitleFuzzy() != null, TITLE_FUZZY);
+        appendShape(shape, filter.hasYearBounds(), YEAR);
+        appendShape(shape, filter.hasAwardsBounds(), AWARDS);
+        appendShape(shape, filter.hasNominationsBounds(), NOMINATIONS);
+        appendShape(shape, filter.isBestPictureFiltered(), IS_BEST_PICTURE);
+        return (shape.length() > 0 ? shape.toString() : "all") + ";" + SORT_BY + '=' + sortKey.getParameterValue();
+    }
+
+    private static void appendShape(final StringBuilder shape, final boolean filtered, final String name) {
+        if (filtered) {
+            shape.append(shape.length() > 0 ? "," : "").append(name);
+        }
+    }
+
+    /**
+     * Raw parameter values in a fixed order, each value prefixed with its length to keep the key unambiguous
+     */
+    private static String getParameterKey(final Function<String, String> parameters) {
+        final StringBuilder key = new StringBuilder();
+        for (String name : PARAMETERS) {
+            final String value = parameters.apply(name);
+            if (value != null && !value.isEmpty()) {
+                key.append(name).append(':').append(value.length()).append(':').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Parse the comma separated property names into a projection
+     */
+    private static int parseFields(final String value) {
+        int fields = 0;
+        for (String name : value.split(",")) {
+            final FilmField field = FilmField.fromParameter(name.trim());
+            if (field == null) {
+                throw new InvalidQueryException(FIELDS, value);
+            }
+            fields |= field.mask();
+        }
+        if (fields == 0) {
+            throw new InvalidQueryException(FIELDS, value);
+        }
+        return fields;
+    }
+
+    private static String fieldsToString(final int fields) {
+        final StringBuilder names = new StringBuilder();
+        for (FilmField field : FilmField.values()) {
+            if (field.isIn(fields)) {
+                names.append(names.length() > 0 ? "," : "").append(field.getParameterValue());
+            }
+        }
+        return names.toString();
+    }
+
+    private static int parseInt(final String parameter, final String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidQueryException(parameter, value);
+        }
+    }
+
+    /**
+     * Query compiled from the raw parameter values of the key
+     */
+    private static final class CompiledQuery {
+
+        private final String key;
+        private final FilmQuery query;
+
+        private CompiledQuery(final String key, final FilmQuery query) {
+            this.key = key;
+            this.query = query;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package de.cyberport.core.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary file of a {@link FilmIndex}, so that the index of a container can be restored
+ * with one sequential file read instead of a traversal of the container after a restart. The
+ * lookup indexes are derived from the restored columns and sort orders, they are not part of the file.
+ *
+ * The file starts with a header of the magic number "FILM", the format version, the number of
+ * films, the number of distinct titles, the length and the CRC32 checksum of the body. The body
+ * holds the container path, the names of the films and the title dictionary as length-prefixed
+ * UTF-8 strings, followed by the title ids, year, awards, nominations and numberOfReferences
+ * columns, the words of the best picture bitmap and the order of every sort key. All numbers are
+ * big-endian.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmSnapshot {
+
+    static final int MAGIC = 0x46494C4D;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private FilmSnapshot() {
+    }
+
+    /**
+     * Write the snapshot of the index into a temporary file next to the given one, which is then
+     * atomically replaced by it
+     * @param index
+     * @param file
+     * @throws IOException
+     */
+    public static void write(final FilmIndex index, final Path file) throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            final CRC32 checksum = new CRC32();
+            final DataOutputStream body = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), checksum), BUFFER_SIZE));
+            writeBody(index, body);
+            body.flush();
+
+            final FilmTable table = index.getTable();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(table.size()).putInt(table.getDistinctTitleCount())
+                    .putLong(channel.size() - HEADER_SIZE).putLong(checksum.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the given snapshot file and restore the index from it, after checking its header and checksum.
+     * The file is read into the heap and closed before the index is restored, so it is never kept open.
+     * @param file
+     * @param parallelScan see {@link FilmIndex#build(org.apache.sling.api.resource.Resource, ParallelScan)}
+     * @return
+     * @throws IOException if the file cannot be read, is no snapshot of this version or is corrupt
+     */
+    public static FilmIndex read(final Path file, final ParallelScan parallelScan) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buffer.remaining() < HEADER_SIZE) {
+                throw new IOException("Film snapshot " + file + " is truncated");
+            }
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("File " + file + " is no film snapshot");
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Film snapshot " + file + " has the unsupported version " + version);
+            }
+            final int size = buffer.getInt();
+            final int titleCount = buffer.getInt();
+            final long bodyLength = buffer.getLong();
+            final long expectedChecksum = buffer.getLong();
+            if (size < 0 || titleCount < 0 || bodyLength != buffer.remaining()) {
+                throw new IOException("Film snapshot " + file + " is truncated");
+            }
+
+            final ByteBuffer body = buffer.slice();
+            final CRC32 checksum = new CRC32();
+            checksum.update(body.duplicate());
+            if (checksum.getValue() != expectedChecksum) {
+                throw new IOException("Checksum of film snapshot " + file + " does not match");
+            }
+            return readBody(body, size, titleCount, parallelScan);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                | NegativeArraySizeException e) {
+            throw new IOException("Film snapshot " + file + " is corrupt", e);
+        }
+    }
+
+    /**
+     * CRC32 checksum of the snapshot body of the index, equal for indexes of the same films
+     * @param index
+     * @return
+     */
+    public static long checksum(final FilmIndex index) {
+        final CRC32 checksum = new CRC32();
+        try (DataOutputStream body = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(NullOutputStream.INSTANCE, checksum), BUFFER_SIZE))) {
+            writeBody(index, body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing into memory failed", e);
+        }
+        return checksum.getValue();
+    }
+
+    private static void writeBody(final FilmIndex index, final DataOutputStream body) throws IOException {
+        final FilmTable table = index.getTable();
+        writeString(body, index.getContainerPath());
+        for (int row = 0; row < table.size(); row++) {
+            writeString(body, table.getName(row));
+        }
+        for (int titleId = 0; titleId < table.getDistinctTitleCount(); titleId++) {
+            writeString(body, table.getDictionaryTitle(titleId));
+        }
+        for (int row = 0; row < table.size(); row++) {
+            body.writeInt(table.getTitleId(row));
+        }
+        for (int row = 0; row < table.size(); row++) {
+            body.writeInt(table.getYear(row));
+        }
+        for (int row = 0; row < table.size(); row++) {
+            body.writeInt(table.getAwards(row));
+        }
+        for (int row = 0; row < table.size(); row++) {
+            body.writeInt(table.getNominations(row));
+        }
+        for (int row = 0; row < table.size(); row++) {
+            body.writeInt(table.getNumberOfReferences(row));
+        }
+        final long[] bestPictures = table.getBestPictures().toLongArray();
+        body.writeInt(bestPictures.length);
+        for (long word : bestPictures) {
+            body.writeLong(word);
+        }
+        for (SortKey sortKey : SortKey.values()) {
+            for (int row : index.getSortOrder(sortKey)) {
+                body.writeInt(row);
+            }
+        }
+    }
+
+    private static FilmIndex readBody(final ByteBuffer body, final int size, final int titleCount,
+                                      final ParallelScan parallelScan) throws IOException {
+        final String containerPath = readString(body);
+        final String[] names = new String[size];
+        for (int row = 0; row < size; row++) {
+            names[row] = readString(body);
+        }
+        final String[] titleDictionary = new String[titleCount];
+        for (int titleId = 0; titleId < titleCount; titleId++) {
+            titleDictionary[titleId] = readString(body);
+        }
+        final int[] titleIds = readInts(body, size);
+        final int[] years = readInts(body, size);
+        final int[] awards = readInts(body, size);
+        final int[] nominations = readInts(body, size);
+        final int[] numberOfReferences = readInts(body, size);
+        final long[] bestPictures = new long[body.getInt()];
+        body.asLongBuffer().get(bestPictures);
+        body.position(body.position() + bestPictures.length * Long.BYTES);
+        final int[][] sortOrders = new int[SortKey.values().length][];
+        for (SortKey sortKey : SortKey.values()) {
+            sortOrders[sortKey.ordinal()] = readInts(body, size);
+        }
+        if (body.hasRemaining()) {
+            throw new IOException("Film snapshot of " + containerPath + " has " + body.remaining() + " trailing bytes");
+        }
+        for (int titleId : titleIds) {
+            if (titleId < 0 || titleId >= titleCount) {
+                throw new IOException("Film snapshot of " + containerPath + " has an unknown title " + titleId);
+            }
+        }
+
+        final FilmTable table = new FilmTable(names, titleDictionary, titleIds, years, awards, nominations,
+                numberOfReferences, BitSet.valueOf(bestPictures));
+        return new FilmIndex(containerPath, table, sortOrders, parallelScan);
+    }
+
+    private static void writeString(final DataOutputStream body, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        body.writeInt(bytes.length);
+        body.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer body) {
+        final int length = body.getInt();
+        if (length < 0 || length > body.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readInts(final ByteBuffer body, final int count) {
+        final int[] values = new int[count];
+        body.asIntBuffer().get(values);
+        body.position(body.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Sink of the bytes that are only checksummed
+     */
+    private static final class NullOutputStream extends OutputStream {
+
+        private static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    }
+}
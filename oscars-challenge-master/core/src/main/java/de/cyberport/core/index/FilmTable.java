@@ -0,0 +1,264 @@
+package de.cyberport.core.index;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Columnar, primitive-typed representation of the films below one film container.
+ * Every film is identified by its row, which follows the order of the container children.
+ * Values are converted once while the table is built, so that queries never parse them again.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmTable {
+
+    private final String[] names;
+    private final Map<String, Integer> rowsByName;
+    private final String[] titleDictionary;
+    private final int[] titleIds;
+    private final int[] years;
+    private final int[] awards;
+    private final int[] nominations;
+    private final int[] numberOfReferences;
+    private final BitSet bestPictures;
+    private final int size;
+
+    private FilmTable(final Builder builder) {
+        this.size = builder.size;
+        this.names = Arrays.copyOf(builder.names, size);
+        this.rowsByName = new HashMap<>(size * 4 / 3 + 1);
+        for (int row = 0; row < size; row++) {
+            rowsByName.put(names[row], row);
+        }
+        this.titleDictionary = builder.titleDictionary.toArray(new String[0]);
+        this.titleIds = Arrays.copyOf(builder.titleIds, size);
+        this.years = Arrays.copyOf(builder.years, size);
+        this.awards = Arrays.copyOf(builder.awards, size);
+        this.nominations = Arrays.copyOf(builder.nominations, size);
+        this.numberOfReferences = Arrays.copyOf(builder.numberOfReferences, size);
+        this.bestPictures = (BitSet) builder.bestPictures.clone();
+    }
+
+    /**
+     * Table of the given columns, as read from a {@link FilmSnapshot}. The arrays are taken over, not copied.
+     */
+    FilmTable(final String[] names, final String[] titleDictionary, final int[] titleIds, final int[] years,
+              final int[] awards, final int[] nominations, final int[] numberOfReferences, final BitSet bestPictures) {
+        this.size = names.length;
+        this.names = names;
+        this.rowsByName = new HashMap<>(size * 4 / 3 + 1);
+        for (int row = 0; row < size; row++) {
+            rowsByName.put(names[row], row);
+        }
+        this.titleDictionary = titleDictionary;
+        this.titleIds = titleIds;
+        this.years = years;
+        this.awards = awards;
+        this.nominations = nominations;
+        this.numberOfReferences = numberOfReferences;
+        this.bestPictures = bestPictures;
+    }
+
+    private FilmTable(final FilmTable table, final int[] numberOfReferences) {
+        this.size = table.size;
+        this.names = table.names;
+        this.rowsByName = table.rowsByName;
+        this.titleDictionary = table.titleDictionary;
+        this.titleIds = table.titleIds;
+        this.years = table.years;
+        this.awards = table.awards;
+        this.nominations = table.nominations;
+        this.numberOfReferences = numberOfReferences;
+        this.bestPictures = table.bestPictures;
+    }
+
+    /**
+     * Build the table from the children of the given container resource
+     * @param container
+     * @return
+     */
+    public static FilmTable fromContainer(final Resource container) {
+        final Builder builder = new Builder();
+        for (Resource child : container.getChildren()) {
+            final ValueMap properties = child.getValueMap();
+            builder.add(
+                    child.getName(),
+                    properties.get(TITLE, ""),
+                    properties.get(YEAR, 0),
+                    properties.get(AWARDS, 0),
+                    properties.get(NOMINATIONS, 0),
+                    properties.get(IS_BEST_PICTURE, false),
+                    properties.get(NUMBER_OF_REFERENCES, 0));
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Name of the container child the row was read from
+     * @param row
+     * @return
+     */
+    public String getName(final int row) {
+        return names[row];
+    }
+
+    /**
+     * Row of the container child with the given name, -1 when there is none
+     * @param name
+     * @return
+     */
+    public int getRow(final String name) {
+        final Integer row = rowsByName.get(name);
+        return row != null ? row : -1;
+    }
+
+    /**
+     * Check if the properties of a container child equal the given row in every column but numberOfReferences
+     * @param row
+     * @param properties
+     * @return
+     */
+    public boolean matchesExceptReferences(final int row, final ValueMap properties) {
+        return getTitle(row).equals(properties.get(TITLE, ""))
+                && years[row] == properties.get(YEAR, 0)
+                && awards[row] == properties.get(AWARDS, 0)
+                && nominations[row] == properties.get(NOMINATIONS, 0)
+                && bestPictures.get(row) == properties.get(IS_BEST_PICTURE, false);
+    }
+
+    public String getTitle(final int row) {
+        return titleDictionary[titleIds[row]];
+    }
+
+    public int getYear(final int row) {
+        return years[row];
+    }
+
+    public int getAwards(final int row) {
+        return awards[row];
+    }
+
+    public int getNominations(final int row) {
+        return nominations[row];
+    }
+
+    public boolean isBestPicture(final int row) {
+        return bestPictures.get(row);
+    }
+
+    public int getNumberOfReferences(final int row) {
+        return numberOfReferences[row];
+    }
+
+    /**
+     * Copy of the table with the given references per row. The rows not contained in the map keep
+     * their value, all other columns are shared with this table.
+     * @param referencesByRow
+     * @return
+     */
+    FilmTable withNumberOfReferences(final Map<Integer, Integer> referencesByRow) {
+        final int[] references = numberOfReferences.clone();
+        for (Map.Entry<Integer, Integer> entry : referencesByRow.entrySet()) {
+            references[entry.getKey()] = entry.getValue();
+        }
+        return new FilmTable(this, references);
+    }
+
+    /**
+     * Rows of the best picture winners, shared with the table and therefore never to be modified
+     * @return
+     */
+    BitSet getBestPictures() {
+        return bestPictures;
+    }
+
+    /**
+     * Number of distinct titles, films with the same title share one dictionary entry
+     * @return
+     */
+    public int getDistinctTitleCount() {
+        return titleDictionary.length;
+    }
+
+    /**
+     * Entry of the title dictionary used by the row
+     * @param row
+     * @return
+     */
+    int getTitleId(final int row) {
+        return titleIds[row];
+    }
+
+    /**
+     * Title of the given entry of the title dictionary
+     * @param titleId
+     * @return
+     */
+    String getDictionaryTitle(final int titleId) {
+        return titleDictionary[titleId];
+    }
+
+    /**
+     * Collects the rows of a table in the order in which they are added.
+     */
+    public static final class Builder {
+
+        private String[] names = new String[16];
+        private final List<String> titleDictionary = new ArrayList<>();
+        private final Map<String, Integer> titleLookup = new HashMap<>();
+        private int[] titleIds = new int[16];
+        private int[] years = new int[16];
+        private int[] awards = new int[16];
+        private int[] nominations = new int[16];
+        private int[] numberOfReferences = new int[16];
+        private final BitSet bestPictures = new BitSet();
+        private int size;
+
+        public Builder add(final String name, final String title, final int year, final int awards,
+                           final int nominations, final boolean bestPicture, final int numberOfReferences) {
+            if (size == years.length) {
+                grow();
+            }
+            this.names[size] = name;
+            this.titleIds[size] = titleLookup.computeIfAbsent(title, key -> {
+                titleDictionary.add(key);
+                return titleDictionary.size() - 1;
+            });
+            this.years[size] = year;
+            this.awards[size] = awards;
+            this.nominations[size] = nominations;
+            this.numberOfReferences[size] = numberOfReferences;
+            this.bestPictures.set(size, bestPicture);
+            size++;
+            return this;
+        }
+
+        public FilmTable build() {
+            return new FilmTable(this);
+        }
+
+        private void grow() {
+            final int capacity = size * 2;
+            names = Arrays.copyOf(names, capacity);
+            titleIds = Arrays.copyOf(titleIds, capacity);
+            years = Arrays.copyOf(years, capacity);
+            awards = Arrays.copyOf(awards, capacity);
+            nominations = Arrays.copyOf(nominations, capacity);
+            numberOfReferences = Arrays.copyOf(numberOfReferences, capacity);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package de.cyberport.core.index;
+
+/**
+ * Thrown when a request parameter of a film query has an invalid value.
+ *
+ * @author ritendra_singh
+ *
+ */
+public class InvalidQueryException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String parameter;
+
+    public InvalidQueryException(final String parameter, final String value) {
+        super("Invalid value '" + value + "' for parameter " + parameter);
+        this.parameter = parameter;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+}
@@ -0,0 +1,148 @@
+package de.cyberport.core.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.IntPredicate;
+
+/**
+ * Walks the sort order of large film containers on a dedicated, bounded {@link ForkJoinPool}.
+ * The positions of the order are split into fixed-size segments that are tested concurrently,
+ * each segment keeps at most as many matching rows as the limit asks for. Segments cover
+ * consecutive ranges of the order, so their rows are merged by concatenating them in the order of
+ * the segments until the limit is reached, and the segments behind a complete one are cancelled.
+ *
+ * Walks over fewer positions than the threshold are left to the request thread, where the
+ * coordination of the segments would cost more than it saves.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class ParallelScan {
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final int segmentSize;
+
+    /**
+     * @param parallelism number of threads of the pool
+     * @param threshold minimum number of positions a walk is expected to test to be split
+     * @param segmentSize number of positions tested by one task
+     */
+    public ParallelScan(final int parallelism, final int threshold, final int segmentSize) {
+        if (parallelism < 1 || segmentSize < 1) {
+            throw new IllegalArgumentException("Invalid parallel scan of " + parallelism + " threads and segments of "
+                    + segmentSize + " positions");
+        }
+        this.pool = new ForkJoinPool(parallelism, ParallelScan::newThread, null, false);
+        this.threshold = Math.max(0, threshold);
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Check if a walk that is expected to test the given number of positions is split into segments
+     * @param positions
+     * @return
+     */
+    public boolean isParallel(final long positions) {
+        return positions >= threshold && positions > segmentSize && !pool.isShutdown();
+    }
+
+    /**
+     * Stop the threads of the pool, walks started afterwards are left to the request thread
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Collect the first rows of the order, starting at the given position, that match
+     * @param order
+     * @param from
+     * @param maxRows
+     * @param matches test of a row, called concurrently
+     * @return the matching rows in the given order, null when the pool is shut down
+     */
+    int[] walk(final int[] order, final int from, final int maxRows, final IntPredicate matches) {
+        try {
+            return pool.invoke(new Segments(order, from, order.length, maxRows, matches));
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private static ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+        final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("film-scan-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    /**
+     * Consecutive segments of the order, split in half at a segment boundary until one segment is left
+     */
+    private final class Segments extends RecursiveTask<int[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] order;
+        private final int start;
+        private final int end;
+        private final int maxRows;
+        private final IntPredicate matches;
+
+        private Segments(final int[] order, final int start, final int end, final int maxRows,
+                         final IntPredicate matches) {
+            this.order = order;
+            this.start = start;
+            this.end = end;
+            this.maxRows = maxRows;
+            this.matches = matches;
+        }
+
+        @Override
+        protected int[] compute() {
+            final int segments = (int) (((long) end - start + segmentSize - 1) / segmentSize);
+            if (segments <= 1) {
+                return scan();
+            }
+            final int middle = start + segments / 2 * segmentSize;
+            final Segments later = new Segments(order, middle, end, maxRows, matches);
+            later.fork();
+            final int[] rows = new Segments(order, start, middle, maxRows, matches).compute();
+            if (rows.length == maxRows) {
+                later.cancel(false);
+                return rows;
+            }
+            final int[] laterRows = later.join();
+            final int[] merged = Arrays.copyOf(rows, (int) Math.min(maxRows, (long) rows.length + laterRows.length));
+            System.arraycopy(laterRows, 0, merged, rows.length, merged.length - rows.length);
+            return merged;
+        }
+
+        private int[] scan() {
+            final int[] rows = new int[Math.min(maxRows, end - start)];
+            int count = 0;
+            for (int position = start; position < end && count < rows.length; position++) {
+                final int row = order[position];
+                if (matches.test(row)) {
+                    rows[count++] = row;
+                }
+            }
+            return count == rows.length ? rows : Arrays.copyOf(rows, count);
+        }
+    }
+}
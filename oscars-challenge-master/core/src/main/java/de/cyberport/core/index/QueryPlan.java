@@ -0,0 +1,84 @@
+package de.cyberport.core.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decision of the {@link QueryPlanner} how the rows of a filter are found: the access path, the
+ * indexed predicates in the order they are evaluated and whether the remaining filters still have
+ * to be checked on each row.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class QueryPlan {
+
+    /**
+     * How the candidate rows are found
+     */
+    public enum AccessPath {
+        /** One of the predicates matches no row, nothing has to be read */
+        EMPTY,
+        /** The rows with the requested title are looked up in the title hash index */
+        TITLE_LOOKUP,
+        /** The bitmaps of the selective predicates, including the rows of a title search, are intersected */
+        BITMAP,
+        /** The order of the sort key is walked until the limit is reached */
+        SCAN
+    }
+
+    /**
+     * Filters that can be answered from an index
+     */
+    public enum Predicate {
+        TITLE, TITLE_SEARCH, YEAR, AWARDS, NOMINATIONS, BEST_PICTURE
+    }
+
+    private final AccessPath accessPath;
+    private final List<Predicate> indexedPredicates;
+    private final boolean residualCheck;
+    private final long estimatedRows;
+
+    QueryPlan(final AccessPath accessPath, final Predicate[] indexedPredicates, final boolean residualCheck,
+              final long estimatedRows) {
+        this.accessPath = accessPath;
+        this.indexedPredicates = Collections.unmodifiableList(Arrays.asList(indexedPredicates));
+        this.residualCheck = residualCheck;
+        this.estimatedRows = estimatedRows;
+    }
+
+    public AccessPath getAccessPath() {
+        return accessPath;
+    }
+
+    /**
+     * Predicates answered from an index, the most selective one first
+     * @return
+     */
+    public List<Predicate> getIndexedPredicates() {
+        return indexedPredicates;
+    }
+
+    /**
+     * Check if the rows found by the access path still have to be tested against the whole filter
+     * @return
+     */
+    public boolean isResidualCheck() {
+        return residualCheck;
+    }
+
+    /**
+     * Number of result rows estimated from the column statistics, before the limit is applied
+     * @return
+     */
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    @Override
+    public String toString() {
+        return accessPath + indexedPredicates.toString() + (residualCheck ? " with residual check" : "")
+                + ", estimated rows: " + estimatedRows;
+    }
+}
@@ -0,0 +1,124 @@
+package de.cyberport.core.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chooses the access path of a filter from the statistics of the indexed columns. The number of
+ * rows of every requested predicate is estimated from the column histograms, the best picture
+ * ratio, the average number of films per title and the title index. The most selective predicate is evaluated
+ * first, predicates that accept most of the rows are left to the row check, and when no predicate
+ * is selective enough the sort order is scanned instead of building bitmaps. A title search is
+ * always answered from the title index, as checking it per row is expensive.
+ *
+ * @author ritendra_singh
+ *
+ */
+final class QueryPlanner {
+
+    /**
+     * Predicates accepting a larger fraction of the rows are cheaper to check per row than to intersect
+     */
+    static final double MAX_BITMAP_SELECTIVITY = 0.5;
+
+    private final int rowCount;
+    private final ColumnStatistics yearStatistics;
+    private final ColumnStatistics awardsStatistics;
+    private final ColumnStatistics nominationsStatistics;
+    private final int bestPictureCount;
+    private final int distinctTitleCount;
+    private final TitleIndex titleIndex;
+
+    QueryPlanner(final int rowCount, final ColumnStatistics yearStatistics, final ColumnStatistics awardsStatistics,
+                 final ColumnStatistics nominationsStatistics, final int bestPictureCount,
+                 final int distinctTitleCount, final TitleIndex titleIndex) {
+        this.rowCount = rowCount;
+        this.yearStatistics = yearStatistics;
+        this.awardsStatistics = awardsStatistics;
+        this.nominationsStatistics = nominationsStatistics;
+        this.bestPictureCount = bestPictureCount;
+        this.distinctTitleCount = distinctTitleCount;
+        this.titleIndex = titleIndex;
+    }
+
+    /**
+     * Plan the evaluation of the given filter
+     * @param filter
+     * @return
+     */
+    QueryPlan plan(final FilmFilter filter) {
+        final List<Estimate> estimates = new ArrayList<>(5);
+        if (filter.hasTitleSearch()) {
+            estimates.add(new Estimate(QueryPlan.Predicate.TITLE_SEARCH, titleIndex.estimateRows(filter)));
+        }
+        if (filter.hasYearBounds()) {
+            estimates.add(new Estimate(QueryPlan.Predicate.YEAR,
+                    yearStatistics.count(filter.getMinYear(), filter.getMaxYear())));
+        }
+        if (filter.hasAwardsBounds()) {
+            estimates.add(new Estimate(QueryPlan.Predicate.AWARDS,
+                    awardsStatistics.count(filter.getMinAwards(), filter.getMaxAwards())));
+        }
+        if (filter.hasNominationsBounds()) {
+            estimates.add(new Estimate(QueryPlan.Predicate.NOMINATIONS,
+                    nominationsStatistics.count(filter.getMinNominations(), filter.getMaxNominations())));
+        }
+        if (filter.isBestPictureFiltered()) {
+            estimates.add(new Estimate(QueryPlan.Predicate.BEST_PICTURE,
+                    filter.getBestPicture() ? bestPictureCount : rowCount - bestPictureCount));
+        }
+        estimates.sort(Comparator.comparingLong(estimate -> estimate.rows));
+
+        // the column histograms are exact and the title search estimate is 0 only without any match,
+        // a predicate without rows empties the whole result
+        if (!estimates.isEmpty() && estimates.get(0).rows == 0) {
+            return new QueryPlan(QueryPlan.AccessPath.EMPTY, new QueryPlan.Predicate[] { estimates.get(0).predicate },
+                    false, 0);
+        }
+
+        double selectivity = 1;
+        for (Estimate estimate : estimates) {
+            selectivity *= (double) estimate.rows / rowCount;
+        }
+
+        if (filter.getTitle() != null) {
+            final long titleRows = distinctTitleCount == 0 ? 0 : (rowCount + distinctTitleCount - 1) / distinctTitleCount;
+            if (estimates.isEmpty() || titleRows <= estimates.get(0).rows) {
+                return new QueryPlan(QueryPlan.AccessPath.TITLE_LOOKUP,
+                        new QueryPlan.Predicate[] { QueryPlan.Predicate.TITLE }, true,
+                        Math.round(titleRows * selectivity));
+            }
+            selectivity *= (double) titleRows / rowCount;
+        }
+
+        final List<QueryPlan.Predicate> indexed = new ArrayList<>(estimates.size());
+        boolean residualCheck = filter.getTitle() != null;
+        for (Estimate estimate : estimates) {
+            if (estimate.rows <= rowCount * MAX_BITMAP_SELECTIVITY
+                    || estimate.predicate == QueryPlan.Predicate.TITLE_SEARCH) {
+                indexed.add(estimate.predicate);
+            } else if (estimate.rows < rowCount) {
+                residualCheck = true;
+            }
+        }
+
+        final long estimatedRows = Math.round(rowCount * selectivity);
+        if (indexed.isEmpty()) {
+            return new QueryPlan(QueryPlan.AccessPath.SCAN, new QueryPlan.Predicate[0], residualCheck, estimatedRows);
+        }
+        return new QueryPlan(QueryPlan.AccessPath.BITMAP, indexed.toArray(new QueryPlan.Predicate[0]),
+                residualCheck, estimatedRows);
+    }
+
+    private static final class Estimate {
+
+        private final QueryPlan.Predicate predicate;
+        private final long rows;
+
+        private Estimate(final QueryPlan.Predicate predicate, final long rows) {
+            this.predicate = predicate;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package de.cyberport.core.index;
+
+import de.cyberport.core.constants.OscarConstants;
+
+/**
+ * Supported values of the sortBy request parameter, all of them sort in ascending order.
+ *
+ * @author ritendra_singh
+ *
+ */
+public enum SortKey {
+
+    TITLE(OscarConstants.TITLE) {
+        @Override
+        int getRank(final FilmTable table, final int[] titleRanks, final int row) {
+            return titleRanks[table.getTitleId(row)];
+        }
+
+        @Override
+        String getValue(final FilmTable table, final int row) {
+            return table.getTitle(row);
+        }
+
+        @Override
+        int compareToValue(final FilmTable table, final int row, final String value) {
+            return table.getTitle(row).compareTo(value);
+        }
+    },
+    YEAR(OscarConstants.YEAR) {
+        @Override
+        int getRank(final FilmTable table, final int[] titleRanks, final int row) {
+            return table.getYear(row);
+        }
+
+        @Override
+        String getValue(final FilmTable table, final int row) {
+            return String.valueOf(table.getYear(row));
+        }
+
+        @Override
+        int compareToValue(final FilmTable table, final int row, final String value) {
+            return Integer.compare(table.getYear(row), Integer.parseInt(value));
+        }
+    },
+    AWARDS(OscarConstants.AWARDS) {
+        @Override
+        int getRank(final FilmTable table, final int[] titleRanks, final int row) {
+            return table.getAwards(row);
+        }
+
+        @Override
+        String getValue(final FilmTable table, final int row) {
+            return String.valueOf(table.getAwards(row));
+        }
+
+        @Override
+        int compareToValue(final FilmTable table, final int row, final String value) {
+            return Integer.compare(table.getAwards(row), Integer.parseInt(value));
+        }
+    },
+    NOMINATIONS(OscarConstants.NOMINATIONS) {
+        @Override
+        int getRank(final FilmTable table, final int[] titleRanks, final int row) {
+            return table.getNominations(row);
+        }
+
+        @Override
+        String getValue(final FilmTable table, final int row) {
+            return String.valueOf(table.getNominations(row));
+        }
+
+        @Override
+        int compareToValue(final FilmTable table, final int row, final String value) {
+            return Integer.compare(table.getNominations(row), Integer.parseInt(value));
+        }
+    };
+
+    private final String parameterValue;
+
+    SortKey(final String parameterValue) {
+        this.parameterValue = parameterValue;
+    }
+
+    public String getParameterValue() {
+        return parameterValue;
+    }
+
+    /**
+     * Resolve the sort key of the sortBy parameter, title is used when it is missing or not supported
+     * @param sortBy
+     * @return
+     */
+    public static SortKey fromParameter(final String sortBy) {
+        if (sortBy != null && !sortBy.isEmpty()) {
+            for (SortKey sortKey : values()) {
+                if (sortKey.parameterValue.equalsIgnoreCase(sortBy)) {
+                    return sortKey;
+                }
+            }
+        }
+        return TITLE;
+    }
+
+    /**
+     * Check if the given value can be compared with the values of this sort key
+     * @param value
+     * @return
+     */
+    boolean isValidValue(final String value) {
+        if (this == TITLE) {
+            return true;
+        }
+        try {
+            Integer.parseInt(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Number in the order of this sort key of the given row, titles are ranked by the given positions
+     * of the distinct titles
+     */
+    abstract int getRank(FilmTable table, int[] titleRanks, int row);
+
+    /**
+     * Value of the sort key of the given row, as it is encoded in a cursor
+     */
+    abstract String getValue(FilmTable table, int row);
+
+    /**
+     * Compare the value of the sort key of the given row with a value from {@link #getValue(FilmTable, int)}
+     */
+    abstract int compareToValue(FilmTable table, int row, String value);
+}
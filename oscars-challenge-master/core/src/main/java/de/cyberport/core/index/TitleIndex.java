@@ -0,0 +1,457 @@
+package de.cyberport.core.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes of the case-folded titles of a {@link FilmTable}.
+ *
+ * A hash index from the folded title to its rows answers the exact title filter. Titles are folded
+ * character by character the same way {@link String#equalsIgnoreCase(String)} compares them, so a
+ * lookup finds exactly the rows the title filter accepts.
+ *
+ * For the title search the distinct folded titles are also kept in ascending order, with their
+ * rows, and a trigram index maps every three characters of the titles, padded with two marks at
+ * both ends, to the ordered positions of the titles containing them. A prefix is found by a binary
+ * search of the ordered titles. A substring is only looked for in the titles containing all of
+ * its trigrams, and a title within an edit distance of k of the searched one shares all but at
+ * most 3k of its trigrams, as an edit changes at most three of them. Only the titles left by these
+ * filters are compared with the search. Substrings shorter than a trigram and fuzzy searches too
+ * short to share any trigram fall back to comparing all the distinct titles.
+ *
+ * @author ritendra_singh
+ *
+ */
+final class TitleIndex {
+
+    /**
+     * Longest edit distance of a fuzzy title search, beyond it hardly any title can be ruled out
+     */
+    static final int MAX_DISTANCE = 3;
+
+    private static final int GRAM = 3;
+    private static final int GALLOP_RATIO = 16;
+    private static final char PAD = '\0';
+    private static final int[] NO_ROWS = new int[0];
+
+    private final Map<String, int[]> rowsByTitle;
+    private final String[] titles;
+    private final int[] rowOffsets;
+    private final int[] rows;
+    private final Map<Long, Posting> postings;
+
+    private TitleIndex(final Map<String, int[]> rowsByTitle, final String[] titles, final int[] rowOffsets,
+                       final int[] rows, final Map<Long, Posting> postings) {
+        this.rowsByTitle = rowsByTitle;
+        this.titles = titles;
+        this.rowOffsets = rowOffsets;
+        this.rows = rows;
+        this.postings = postings;
+    }
+
+    static TitleIndex build(final FilmTable table) {
+        final Map<String, List<Integer>> rowLists = new HashMap<>();
+        for (int row = 0; row < table.size(); row++) {
+            rowLists.computeIfAbsent(fold(table.getTitle(row)), title -> new ArrayList<>(1)).add(row);
+        }
+
+        final Map<String, int[]> rowsByTitle = new HashMap<>(rowLists.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> entry : rowLists.entrySet()) {
+            rowsByTitle.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        final String[] titles = rowsByTitle.keySet().toArray(new String[0]);
+        Arrays.sort(titles);
+        final int[] rowOffsets = new int[titles.length + 1];
+        final int[] rows = new int[table.size()];
+        for (int position = 0; position < titles.length; position++) {
+            final int[] titleRows = rowsByTitle.get(titles[position]);
+            System.arraycopy(titleRows, 0, rows, rowOffsets[position], titleRows.length);
+            rowOffsets[position + 1] = rowOffsets[position] + titleRows.length;
+        }
+        return new TitleIndex(rowsByTitle, titles, rowOffsets, rows, buildPostings(titles, rowOffsets));
+    }
+
+    /**
+     * Count the titles per trigram first, so that every posting list is allocated once with its final size
+     */
+    private static Map<Long, Posting> buildPostings(final String[] titles, final int[] rowOffsets) {
+        final Map<Long, Posting> postings = new HashMap<>();
+        long[] grams = new long[0];
+        for (String title : titles) {
+            grams = grams(title, true, grams);
+            final int count = distinct(grams, title.length() + GRAM - 1);
+            for (int i = 0; i < count; i++) {
+                postings.computeIfAbsent(grams[i], gram -> new Posting()).size++;
+            }
+        }
+        for (Posting posting : postings.values()) {
+            posting.positions = new int[posting.size];
+            posting.size = 0;
+        }
+        for (int position = 0; position < titles.length; position++) {
+            grams = grams(titles[position], true, grams);
+            final int count = distinct(grams, titles[position].length() + GRAM - 1);
+            for (int i = 0; i < count; i++) {
+                final Posting posting = postings.get(grams[i]);
+                posting.positions[posting.size++] = position;
+                posting.rowCount += rowOffsets[position + 1] - rowOffsets[position];
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Rows whose title equals the given one ignoring case, in row order. The returned array is
+     * shared with the index and therefore never to be modified.
+     * @param title
+     * @return
+     */
+    int[] lookup(final String title) {
+        return lookupFolded(fold(title));
+    }
+
+    /**
+     * Rows of a title that is already folded, see {@link #lookup(String)}
+     * @param foldedTitle
+     * @return
+     */
+    int[] lookupFolded(final String foldedTitle) {
+        return rowsByTitle.getOrDefault(foldedTitle, NO_ROWS);
+    }
+
+    /**
+     * Upper bound of the rows matching the title search of the filter, estimated from the index
+     * alone. It is exact for a prefix and 0 only when no title can match.
+     * @param filter
+     * @return
+     */
+    long estimateRows(final FilmFilter filter) {
+        long estimate = rows.length;
+        if (filter.getTitlePrefix() != null) {
+            final int from = lowerBound(filter.getTitlePrefix());
+            estimate = Math.min(estimate, rowOffsets[prefixEnd(filter.getTitlePrefix(), from)] - rowOffsets[from]);
+        }
+        if (filter.getTitleContains() != null && filter.getTitleContains().length() >= GRAM) {
+            final long[] grams = grams(filter.getTitleContains(), false, new long[0]);
+            for (int i = 0, count = distinct(grams, filter.getTitleContains().length() - GRAM + 1); i < count; i++) {
+                final Posting posting = postings.get(grams[i]);
+                estimate = Math.min(estimate, posting != null ? posting.rowCount : 0);
+            }
+        }
+        if (filter.getTitleFuzzy() != null) {
+            final long[] grams = grams(filter.getTitleFuzzy(), true, new long[0]);
+            final int count = distinct(grams, filter.getTitleFuzzy().length() + GRAM - 1);
+            final int minShared = count - GRAM * filter.getTitleDistance();
+            if (minShared > 0) {
+                long postingRows = 0;
+                int present = 0;
+                for (int i = 0; i < count; i++) {
+                    final Posting posting = postings.get(grams[i]);
+                    if (posting != null) {
+                        postingRows += posting.rowCount;
+                        present++;
+                    }
+                }
+                estimate = Math.min(estimate, present < minShared ? 0 : postingRows);
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Rows whose title matches the title search of the filter. The titles are taken from the
+     * search that is expected to leave the fewest of them and then compared with all searches.
+     * @param filter
+     * @return
+     */
+    BitSet search(final FilmFilter filter) {
+        final BitSet result = new BitSet(rows.length);
+        for (int position : candidates(filter)) {
+            if (filter.matchesTitleSearch(titles[position])) {
+                result.set(rows[rowOffsets[position]]);
+                for (int i = rowOffsets[position] + 1; i < rowOffsets[position + 1]; i++) {
+                    result.set(rows[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Positions of the titles that can match the most selective of the title searches
+     */
+    private int[] candidates(final FilmFilter filter) {
+        int[] candidates = null;
+        if (filter.getTitlePrefix() != null) {
+            final int from = lowerBound(filter.getTitlePrefix());
+            candidates = range(from, prefixEnd(filter.getTitlePrefix(), from));
+        }
+        if (filter.getTitleContains() != null && filter.getTitleContains().length() >= GRAM) {
+            candidates = smaller(candidates, containing(filter.getTitleContains()));
+        }
+        if (filter.getTitleFuzzy() != null) {
+            candidates = smaller(candidates, similar(filter.getTitleFuzzy(), filter.getTitleDistance()));
+        }
+        return candidates != null ? candidates : range(0, titles.length);
+    }
+
+    /**
+     * Positions of the titles containing every trigram of the given substring
+     */
+    private int[] containing(final String substring) {
+        final long[] grams = grams(substring, false, new long[0]);
+        final int count = distinct(grams, substring.length() - GRAM + 1);
+        final Posting[] lists = new Posting[count];
+        for (int i = 0; i < count; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        int[] candidates = Arrays.copyOf(lists[0].positions, lists[0].size);
+        int size = candidates.length;
+        for (int i = 1; i < lists.length && size > 0; i++) {
+            size = intersect(candidates, size, lists[i].positions, lists[i].size);
+        }
+        return Arrays.copyOf(candidates, size);
+    }
+
+    /**
+     * Positions of the titles sharing enough trigrams with the given title to be within the
+     * distance, null when every title has to be compared. Such a title shares at least one of any
+     * trigrams but the minimum number to share less one, so only the rarest of them are merged into
+     * candidates, the more frequent ones are looked up for every candidate.
+     */
+    private int[] similar(final String title, final int distance) {
+        final long[] grams = grams(title, true, new long[0]);
+        final int count = distinct(grams, title.length() + GRAM - 1);
+        final int minShared = count - GRAM * distance;
+        if (minShared <= 0) {
+            return null;
+        }
+
+        final Posting[] lists = new Posting[count];
+        int present = 0;
+        for (int i = 0; i < count; i++) {
+            final Posting posting = postings.get(grams[i]);
+            if (posting != null) {
+                lists[present++] = posting;
+            }
+        }
+        if (present < minShared) {
+            return new int[0];
+        }
+        Arrays.sort(lists, 0, present, (a, b) -> Integer.compare(a.size, b.size));
+
+        final int rareLists = present - minShared + 1;
+        int total = 0;
+        for (int i = 0; i < rareLists; i++) {
+            total += lists[i].size;
+        }
+        final int[] positions = new int[total];
+        int size = 0;
+        for (int i = 0; i < rareLists; i++) {
+            System.arraycopy(lists[i].positions, 0, positions, size, lists[i].size);
+            size += lists[i].size;
+        }
+        Arrays.sort(positions);
+
+        int kept = 0;
+        for (int start = 0, end; start < size; start = end) {
+            end = start + 1;
+            while (end < size && positions[end] == positions[start]) {
+                end++;
+            }
+            final int position = positions[start];
+            if (Math.abs(titles[position].length() - title.length()) > distance) {
+                continue;
+            }
+            int shared = end - start;
+            for (int i = rareLists; i < present && shared < minShared && shared + present - i >= minShared; i++) {
+                if (Arrays.binarySearch(lists[i].positions, 0, lists[i].size, position) >= 0) {
+                    shared++;
+                }
+            }
+            if (shared >= minShared) {
+                positions[kept++] = position;
+            }
+        }
+        return Arrays.copyOf(positions, kept);
+    }
+
+    /**
+     * Position of the first title not less than the given one
+     */
+    private int lowerBound(final String title) {
+        int low = 0;
+        int high = titles.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (titles[middle].compareTo(title) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Position after the last title starting with the prefix, the titles with the prefix start at from
+     */
+    private int prefixEnd(final String prefix, final int from) {
+        int low = from;
+        int high = titles.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (titles[middle].startsWith(prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int[] range(final int from, final int to) {
+        final int[] positions = new int[to - from];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = from + i;
+        }
+        return positions;
+    }
+
+    private static int[] smaller(final int[] candidates, final int[] others) {
+        if (candidates == null) {
+            return others;
+        }
+        return others != null && others.length < candidates.length ? others : candidates;
+    }
+
+    /**
+     * Keep the first size positions that are also in the other ascending positions, in place
+     * @return the number of positions kept
+     */
+    private static int intersect(final int[] positions, final int size, final int[] others, final int otherSize) {
+        int kept = 0;
+        if (otherSize / GALLOP_RATIO > size) {
+            // far fewer positions than others, looking each of them up beats walking all the others
+            for (int i = 0; i < size; i++) {
+                if (Arrays.binarySearch(others, 0, otherSize, positions[i]) >= 0) {
+                    positions[kept++] = positions[i];
+                }
+            }
+            return kept;
+        }
+        int other = 0;
+        for (int i = 0; i < size && other < otherSize; i++) {
+            while (other < otherSize && others[other] < positions[i]) {
+                other++;
+            }
+            if (other < otherSize && others[other] == positions[i]) {
+                positions[kept++] = positions[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Trigrams of the title, each packed into a long, with two pad marks at both ends if requested
+     * @param title
+     * @param padded
+     * @param buffer reused when it is large enough
+     * @return the buffer holding the trigrams in order of their position
+     */
+    private static long[] grams(final String title, final boolean padded, final long[] buffer) {
+        final int padding = padded ? GRAM - 1 : 0;
+        final int count = Math.max(0, title.length() + 2 * padding - GRAM + 1);
+        final long[] grams = buffer.length >= count ? buffer : new long[Math.max(count, buffer.length * 2)];
+        for (int start = 0; start < count; start++) {
+            long gram = 0;
+            for (int i = start; i < start + GRAM; i++) {
+                final int index = i - padding;
+                gram = gram << Character.SIZE | (index >= 0 && index < title.length() ? title.charAt(index) : PAD);
+            }
+            grams[start] = gram;
+        }
+        return grams;
+    }
+
+    /**
+     * Sort the first count trigrams and move the distinct ones to the front
+     * @return the number of distinct trigrams
+     */
+    private static int distinct(final long[] grams, final int count) {
+        if (count <= 0) {
+            return 0;
+        }
+        Arrays.sort(grams, 0, count);
+        int distinct = 1;
+        for (int i = 1; i < count; i++) {
+            if (grams[i] != grams[distinct - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Check if the Levenshtein distance of the two strings is at most the given one, giving up as
+     * soon as every alignment of a prefix of the first string exceeds it
+     * @param first
+     * @param second
+     * @param distance
+     * @return
+     */
+    static boolean isWithinDistance(final String first, final String second, final int distance) {
+        if (Math.abs(first.length() - second.length()) > distance) {
+            return false;
+        }
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+            int rowMinimum = i;
+            for (int j = 1; j <= second.length(); j++) {
+                final int substitution = previous[j - 1] + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > distance) {
+                return false;
+            }
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[second.length()] <= distance;
+    }
+
+    static String fold(final String title) {
+        final char[] chars = title.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Ascending positions of the titles containing one trigram and the number of their rows
+     */
+    private static final class Posting {
+
+        private int[] positions;
+        private int size;
+        private long rowCount;
+    }
+}
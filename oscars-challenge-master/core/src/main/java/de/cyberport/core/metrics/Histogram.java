@@ -0,0 +1,112 @@
+package de.cyberport.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values, e.g. durations in nanoseconds or result sizes.
+ * Values are counted in buckets that split every power of two into eight sub-buckets, so a
+ * percentile is reported with a relative error of at most 12.5% while recording costs a few
+ * bit operations and one atomic increment.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Count the given value, negative values are counted as 0
+     * @param value
+     */
+    public void record(final long value) {
+        final long recorded = Math.max(0, value);
+        counts.incrementAndGet(bucket(recorded));
+        count.increment();
+        sum.add(recorded);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Mean of the recorded values, 0 when there are none
+     * @return
+     */
+    public double getMean() {
+        final long values = count.sum();
+        return values == 0 ? 0 : sum.sum() / (double) values;
+    }
+
+    /**
+     * Upper bound of the bucket containing the value below which the given share of the recorded
+     * values lies, 0 when there are none
+     * @param percentile between 0, exclusive, and 100
+     * @return
+     */
+    public long getPercentile(final double percentile) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = counts.get(bucket);
+            total += snapshot[bucket];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long cumulative = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulative += snapshot[bucket];
+            if (cumulative >= rank) {
+                return upperBound(bucket);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Forget all recorded values. Values recorded concurrently may be partially kept.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.reset();
+        sum.reset();
+    }
+
+    /**
+     * Values below eight have a bucket each, above that the bucket is given by the position of the
+     * highest bit and the three bits below it
+     */
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Largest value counted in the given bucket
+     */
+    static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long width = 1L << (highestBit - SUB_BUCKET_BITS);
+        final long lowerBound = (1L << highestBit) + (bucket % SUB_BUCKETS) * width;
+        return lowerBound + width - 1;
+    }
+}
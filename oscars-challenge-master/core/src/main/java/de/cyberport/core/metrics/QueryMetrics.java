@@ -0,0 +1,182 @@
+package de.cyberport.core.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated timings and outcomes of the film queries: a latency histogram per phase and for the
+ * whole request, the result sizes, the number of requests per query shape and the hit rates of
+ * the result cache and of the indexes. Recording only increments lock-free counters, so it can
+ * run on every request.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class QueryMetrics {
+
+    /**
+     * Query shapes beyond this number are counted together, which only happens if new kinds of
+     * filters are added without raising it
+     */
+    static final int MAX_SHAPES = 256;
+
+    static final String OTHER_SHAPES = "other";
+
+    private final Histogram[] phases = new Histogram[QueryTrace.PHASES.length];
+    private final Histogram total = new Histogram();
+    private final Histogram resultSizes = new Histogram();
+    private final Histogram indexBuilds = new Histogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final Map<String, LongAdder> shapes = new ConcurrentHashMap<>();
+
+    public QueryMetrics() {
+        for (int phase = 0; phase < phases.length; phase++) {
+            phases[phase] = new Histogram();
+        }
+    }
+
+    /**
+     * Start the trace of a query at the current time
+     * @return
+     */
+    public QueryTrace startTrace() {
+        return new QueryTrace(System.nanoTime());
+    }
+
+    /**
+     * Record the completed trace of a query
+     * @param trace
+     */
+    public void record(final QueryTrace trace) {
+        requests.increment();
+        total.record(trace.getTotalDuration());
+        for (QueryTrace.Phase phase : QueryTrace.PHASES) {
+            final long duration = trace.getDuration(phase);
+            if (duration > 0) {
+                phases[phase.ordinal()].record(duration);
+            }
+        }
+        if (trace.getShape() == null) {
+            rejected.increment();
+            return;
+        }
+        shapeCount(trace.getShape()).increment();
+        if (trace.isCacheHit()) {
+            cacheHits.increment();
+        }
+        if (trace.getResultSize() >= 0) {
+            resultSizes.record(trace.getResultSize());
+        }
+    }
+
+    /**
+     * Record the build of a film container index
+     * @param nanos duration of the build
+     */
+    public void recordIndexBuild(final long nanos) {
+        indexBuilds.record(nanos);
+    }
+
+    /**
+     * Nanoseconds spent per request in the given phase, requests that did not reach it are not counted
+     * @param phase
+     * @return
+     */
+    public Histogram getPhase(final QueryTrace.Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * Nanoseconds per request
+     * @return
+     */
+    public Histogram getTotal() {
+        return total;
+    }
+
+    /**
+     * Films per response
+     * @return
+     */
+    public Histogram getResultSizes() {
+        return resultSizes;
+    }
+
+    /**
+     * Nanoseconds per index build
+     * @return
+     */
+    public Histogram getIndexBuilds() {
+        return indexBuilds;
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Requests rejected because of invalid parameters
+     * @return
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Share of the valid requests answered from the result cache, 0 without requests
+     * @return
+     */
+    public double getCacheHitRate() {
+        final long accepted = requests.sum() - rejected.sum();
+        return accepted > 0 ? cacheHits.sum() / (double) accepted : 0;
+    }
+
+    /**
+     * Share of the valid requests answered from an index that was already built, 0 without requests
+     * @return
+     */
+    public double getIndexHitRate() {
+        final long accepted = requests.sum() - rejected.sum();
+        return accepted > 0 ? Math.max(0, 1 - indexBuilds.getCount() / (double) accepted) : 0;
+    }
+
+    /**
+     * Number of valid requests per query shape, ordered by shape
+     * @return
+     */
+    public Map<String, Long> getShapeCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : shapes.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        for (Histogram phase : phases) {
+            phase.reset();
+        }
+        total.reset();
+        resultSizes.reset();
+        indexBuilds.reset();
+        requests.reset();
+        rejected.reset();
+        cacheHits.reset();
+        shapes.clear();
+    }
+
+    private LongAdder shapeCount(final String shape) {
+        final LongAdder count = shapes.get(shape);
+        if (count != null) {
+            return count;
+        }
+        return shapes.computeIfAbsent(shapes.size() < MAX_SHAPES ? shape : OTHER_SHAPES, key -> new LongAdder());
+    }
+}
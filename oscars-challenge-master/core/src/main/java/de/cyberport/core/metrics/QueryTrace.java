@@ -0,0 +1,106 @@
+package de.cyberport.core.metrics;
+
+/**
+ * Timings and outcome of one film query, collected by the request thread and recorded in the
+ * {@link QueryMetrics} once the response is sent. A trace is not shared between threads.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class QueryTrace {
+
+    /**
+     * Phases of a film query, in the order in which they run.
+     */
+    public enum Phase {
+        /** Parsing and validating the request parameters */
+        COMPILE,
+        /** Looking up, or on first access loading, the index of the film container */
+        INDEX,
+        /** Looking up the cached result */
+        CACHE,
+        /** Filtering, sorting and limiting the rows, a single pass over the index */
+        SELECT,
+        /** Writing the result rows as JSON */
+        SERIALIZE,
+        /** Compressing, if requested, and sending the body */
+        WRITE
+    }
+
+    static final Phase[] PHASES = Phase.values();
+
+    private final long[] durations = new long[PHASES.length];
+    private final long started;
+    private long last;
+    private String shape;
+    private int resultSize = -1;
+    private boolean cacheHit;
+
+    QueryTrace(final long started) {
+        this.started = started;
+        this.last = started;
+    }
+
+    /**
+     * Add the time since the end of the previous phase to the given phase
+     * @param phase
+     */
+    public void endPhase(final Phase phase) {
+        final long now = System.nanoTime();
+        durations[phase.ordinal()] += now - last;
+        last = now;
+    }
+
+    /**
+     * Kind of the query, see {@link de.cyberport.core.index.FilmQuery#getShape()}, null for rejected queries
+     * @param shape
+     */
+    public void setShape(final String shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Number of films in the response
+     * @param resultSize
+     */
+    public void setResultSize(final int resultSize) {
+        this.resultSize = resultSize;
+    }
+
+    public void setCacheHit(final boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    /**
+     * Nanoseconds spent in the given phase, 0 when it did not run
+     * @param phase
+     * @return
+     */
+    public long getDuration(final Phase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    /**
+     * Nanoseconds from the start of the trace to the end of its last phase
+     * @return
+     */
+    public long getTotalDuration() {
+        return last - started;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * Number of films in the response, -1 when no result was sent
+     * @return
+     */
+    public int getResultSize() {
+        return resultSize;
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+}
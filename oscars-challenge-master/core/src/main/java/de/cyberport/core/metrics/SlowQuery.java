@@ -0,0 +1,88 @@
+package de.cyberport.core.metrics;
+
+/**
+ * Entry of the {@link SlowQueryLog}: what a slow film query asked for, how much of the index it had
+ * to examine and where its time went.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class SlowQuery {
+
+    private final long timestamp;
+    private final String containerPath;
+    private final String query;
+    private final String shape;
+    private final int examinedRows;
+    private final int returnedRows;
+    private final boolean cacheHit;
+    private final long[] durations = new long[QueryTrace.PHASES.length];
+    private final long totalDuration;
+
+    /**
+     * @param timestamp milliseconds since the epoch when the query was answered
+     * @param containerPath
+     * @param query normalized parameters of the query
+     * @param examinedRows rows tested against the filters, 0 when the result was cached
+     * @param trace completed trace of the query
+     */
+    public SlowQuery(final long timestamp, final String containerPath, final String query, final int examinedRows,
+                     final QueryTrace trace) {
+        this.timestamp = timestamp;
+        this.containerPath = containerPath;
+        this.query = query;
+        this.shape = trace.getShape();
+        this.examinedRows = examinedRows;
+        this.returnedRows = trace.getResultSize();
+        this.cacheHit = trace.isCacheHit();
+        for (QueryTrace.Phase phase : QueryTrace.PHASES) {
+            durations[phase.ordinal()] = trace.getDuration(phase);
+        }
+        this.totalDuration = trace.getTotalDuration();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getContainerPath() {
+        return containerPath;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public int getExaminedRows() {
+        return examinedRows;
+    }
+
+    public int getReturnedRows() {
+        return returnedRows;
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    /**
+     * Nanoseconds spent in the given phase, 0 when it did not run
+     * @param phase
+     * @return
+     */
+    public long getDuration(final QueryTrace.Phase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    /**
+     * Nanoseconds of the whole query
+     * @return
+     */
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+}
@@ -0,0 +1,70 @@
+package de.cyberport.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring buffer of the most recent slow queries. Adding an entry claims the next sequence
+ * number and overwrites the oldest slot, so writers never wait for each other or for readers.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class SlowQueryLog {
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SlowQueryLog(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public void add(final SlowQuery slowQuery) {
+        final long next = sequence.getAndIncrement();
+        slots.set((int) (next % slots.length()), new Slot(next, slowQuery));
+    }
+
+    /**
+     * Entries currently kept, newest first. Slots that are being overwritten while reading are skipped.
+     * @return
+     */
+    public List<SlowQuery> getEntries() {
+        final long last = sequence.get() - 1;
+        final List<SlowQuery> entries = new ArrayList<>();
+        for (long current = last; current >= 0 && current > last - slots.length(); current--) {
+            final Slot slot = slots.get((int) (current % slots.length()));
+            if (slot != null && slot.sequence == current) {
+                entries.add(slot.slowQuery);
+            }
+        }
+        return entries;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Number of entries added so far, including the ones that were overwritten
+     * @return
+     */
+    public long getAddedCount() {
+        return sequence.get();
+    }
+
+    private static final class Slot {
+
+        private final long sequence;
+        private final SlowQuery slowQuery;
+
+        private Slot(final long sequence, final SlowQuery slowQuery) {
+            this.sequence = sequence;
+            this.slowQuery = slowQuery;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.cyberport.core.serialization;
+
+import de.cyberport.core.index.FilmField;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes responses in the binary result format written by {@link FilmBinaryWriter} into columns,
+ * for Java clients of the film servlet.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmBinaryReader {
+
+    private FilmBinaryReader() {
+    }
+
+    /**
+     * Decode the given response body
+     * @param body
+     * @return
+     * @throws IOException if the body is no binary film result of the supported version
+     */
+    public static Result read(final byte[] body) throws IOException {
+        return read(new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Decode the response body read from the stream, which is not closed
+     * @param stream
+     * @return
+     * @throws IOException if the body is no binary film result of the supported version
+     */
+    public static Result read(final InputStream stream) throws IOException {
+        final DataInputStream input = new DataInputStream(stream);
+        if (input.readInt() != FilmBinaryWriter.MAGIC) {
+            throw new IOException("Body is no binary film result");
+        }
+        final short version = input.readShort();
+        if (version != FilmBinaryWriter.VERSION) {
+            throw new IOException("Unsupported version " + version + " of the binary film result");
+        }
+        final int fields = input.readUnsignedByte();
+        final int size = input.readInt();
+        if (fields > FilmField.ALL || size < 0) {
+            throw new IOException("Binary film result is corrupt");
+        }
+
+        final Result result = new Result(fields, size);
+        for (int i = 0; i < size; i++) {
+            if (result.titles != null) {
+                result.titles[i] = readString(input);
+            }
+            if (result.years != null) {
+                result.years[i] = input.readInt();
+            }
+            if (result.awards != null) {
+                result.awards[i] = input.readInt();
+            }
+            if (result.nominations != null) {
+                result.nominations[i] = input.readInt();
+            }
+            if (result.bestPictures != null) {
+                result.bestPictures[i] = input.readBoolean();
+            }
+            if (result.numberOfReferences != null) {
+                result.numberOfReferences[i] = input.readInt();
+            }
+        }
+        result.next = readString(input);
+        return result;
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length == FilmBinaryWriter.NO_NEXT) {
+            return null;
+        }
+        if (length < 0) {
+            throw new EOFException("Binary film result is corrupt");
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decoded films, one column per field. Only the columns of the requested fields are filled.
+     */
+    public static final class Result {
+
+        private final int fields;
+        private final int size;
+        private final String[] titles;
+        private final int[] years;
+        private final int[] awards;
+        private final int[] nominations;
+        private final boolean[] bestPictures;
+        private final int[] numberOfReferences;
+        private String next;
+
+        private Result(final int fields, final int size) {
+            this.fields = fields;
+            this.size = size;
+            titles = FilmField.TITLE.isIn(fields) ? new String[size] : null;
+            years = FilmField.YEAR.isIn(fields) ? new int[size] : null;
+            awards = FilmField.AWARDS.isIn(fields) ? new int[size] : null;
+            nominations = FilmField.NOMINATIONS.isIn(fields) ? new int[size] : null;
+            bestPictures = FilmField.IS_BEST_PICTURE.isIn(fields) ? new boolean[size] : null;
+            numberOfReferences = FilmField.NUMBER_OF_REFERENCES.isIn(fields) ? new int[size] : null;
+        }
+
+        /**
+         * Projection of the fields contained, see {@link FilmField}
+         * @return
+         */
+        public int getFields() {
+            return fields;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public String getTitle(final int i) {
+            return titles[i];
+        }
+
+        public int getYear(final int i) {
+            return years[i];
+        }
+
+        public int getAwards(final int i) {
+            return awards[i];
+        }
+
+        public int getNominations(final int i) {
+            return nominations[i];
+        }
+
+        public boolean isBestPicture(final int i) {
+            return bestPictures[i];
+        }
+
+        public int getNumberOfReferences(final int i) {
+            return numberOfReferences[i];
+        }
+
+        /**
+         * Cursor of the following page
+         * @return the cursor, null on the last page
+         */
+        public String getNext() {
+            return next;
+        }
+    }
+}
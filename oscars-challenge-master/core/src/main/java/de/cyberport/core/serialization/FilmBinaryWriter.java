@@ -0,0 +1,142 @@
+package de.cyberport.core.serialization;
+
+import de.cyberport.core.index.FilmField;
+import de.cyberport.core.index.FilmTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams the films of a {@link FilmTable} in the compact binary result format into an
+ * {@link OutputStream}, straight from the columns of the table. Output is collected in one byte
+ * buffer that is reused for the whole response and handed to the stream whenever it is full.
+ *
+ * The format, all numbers big-endian:
+ * <pre>
+ * int    magic, "FLMR"
+ * short  format version
+ * byte   projection of the fields, see {@link FilmField#mask()}
+ * int    number of films
+ * films  the requested fields of every film in the order of {@link FilmField}:
+ *        title as int length and UTF-8 bytes, year, awards and nominations as int,
+ *        isBestPicture as byte 0 or 1, numberOfReferences as int
+ * int    length of the UTF-8 bytes of the next cursor, followed by them, -1 without next cursor
+ * </pre>
+ * Decoded by {@link FilmBinaryReader}.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmBinaryWriter {
+
+    public static final int MAGIC = 0x464C4D52;
+    public static final short VERSION = 1;
+
+    static final int NO_NEXT = -1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream output;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    public FilmBinaryWriter(final OutputStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Write the given fields of the rows and flush the buffer into the stream. Columns of fields that
+     * are not requested are not read at all.
+     * @param table
+     * @param rows
+     * @param fields projection of the fields to write, see {@link FilmField}
+     * @param next cursor of the following page, omitted when null
+     * @throws IOException
+     */
+    public void writeResult(final FilmTable table, final int[] rows, final int fields, final String next)
+            throws IOException {
+        appendInt(MAGIC);
+        appendShort(VERSION);
+        append((byte) fields);
+        appendInt(rows.length);
+        final boolean title = FilmField.TITLE.isIn(fields);
+        final boolean year = FilmField.YEAR.isIn(fields);
+        final boolean awards = FilmField.AWARDS.isIn(fields);
+        final boolean nominations = FilmField.NOMINATIONS.isIn(fields);
+        final boolean bestPicture = FilmField.IS_BEST_PICTURE.isIn(fields);
+        final boolean references = FilmField.NUMBER_OF_REFERENCES.isIn(fields);
+        for (int row : rows) {
+            if (title) {
+                appendString(table.getTitle(row));
+            }
+            if (year) {
+                appendInt(table.getYear(row));
+            }
+            if (awards) {
+                appendInt(table.getAwards(row));
+            }
+            if (nominations) {
+                appendInt(table.getNominations(row));
+            }
+            if (bestPicture) {
+                append(table.isBestPicture(row) ? (byte) 1 : (byte) 0);
+            }
+            if (references) {
+                appendInt(table.getNumberOfReferences(row));
+            }
+        }
+        if (next != null) {
+            appendString(next);
+        } else {
+            appendInt(NO_NEXT);
+        }
+        flush();
+    }
+
+    private void appendString(final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        appendInt(bytes.length);
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                output.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void appendInt(final int value) throws IOException {
+        if (buffer.length - position < Integer.BYTES) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void appendShort(final short value) throws IOException {
+        append((byte) (value >>> 8));
+        append((byte) value);
+    }
+
+    private void append(final byte b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = b;
+    }
+
+    private void flushBuffer() throws IOException {
+        output.write(buffer, 0, position);
+        position = 0;
+    }
+
+    private void flush() throws IOException {
+        flushBuffer();
+        output.flush();
+    }
+}
@@ -0,0 +1,320 @@
+package de.cyberport.core.serialization;
+
+import de.cyberport.core.index.FilmFacets;
+import de.cyberport.core.index.FilmField;
+import de.cyberport.core.index.FilmTable;
+import de.cyberport.core.metrics.QueryTrace;
+import de.cyberport.core.metrics.SlowQuery;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Streams the films of a {@link FilmTable}, or their {@link FilmFacets}, as JSON into a {@link Writer}, token by token,
+ * without reflection and without building the document in memory. Output is collected in one
+ * char buffer that is reused for the whole response and handed to the writer whenever it is full.
+ *
+ * Property types follow the documented response: year as string, awards, nominations and
+ * numberOfReferences as numbers, isBestPicture as boolean.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class FilmJsonWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+
+    public FilmJsonWriter(final Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Write the given rows as {"result":[...]} and flush the buffer into the writer
+     * @param table
+     * @param rows
+     * @throws IOException
+     */
+    public void writeResult(final FilmTable table, final int[] rows) throws IOException {
+        writeResult(table, rows, FilmField.ALL, null);
+    }
+
+    /**
+     * Write the given fields of the rows as {"result":[...],"next":"..."} and flush the buffer into
+     * the writer. Columns of fields that are not requested are not read at all.
+     * @param table
+     * @param rows
+     * @param fields projection of the fields to write, see {@link FilmField}
+     * @param next cursor of the following page, omitted when null
+     * @throws IOException
+     */
+    public void writeResult(final FilmTable table, final int[] rows, final int fields, final String next)
+            throws IOException {
+        append('{');
+        appendString(RESULT);
+        append(':');
+        append('[');
+        for (int i = 0; i < rows.length; i++) {
+            if (i > 0) {
+                append(',');
+            }
+            writeFilm(table, rows[i], fields);
+        }
+        append(']');
+        if (next != null) {
+            appendName(NEXT, false);
+            appendString(next);
+        }
+        append('}');
+        flush();
+    }
+
+    /**
+     * Write the facets as {"count":n,"year":{"value":count,...},...,"numberOfReferences":{"min":..,"max":..,"sum":..}}
+     * and flush the buffer into the writer. Values without films are left out, min and max are left
+     * out when no film matches.
+     * @param facets
+     * @throws IOException
+     */
+    public void writeFacets(final FilmFacets facets) throws IOException {
+        append('{');
+        appendName(COUNT, true);
+        appendInt(facets.getCount());
+        appendName(YEAR, false);
+        writeValueCounts(facets.getYears());
+        appendName(AWARDS, false);
+        writeValueCounts(facets.getAwards());
+        appendName(NOMINATIONS, false);
+        writeValueCounts(facets.getNominations());
+        appendName(IS_BEST_PICTURE, false);
+        append('{');
+        if (facets.getBestPictureCount() > 0) {
+            appendName("true", true);
+            appendInt(facets.getBestPictureCount());
+        }
+        if (facets.getCount() > facets.getBestPictureCount()) {
+            appendName("false", facets.getBestPictureCount() == 0);
+            appendInt(facets.getCount() - facets.getBestPictureCount());
+        }
+        append('}');
+        appendName(NUMBER_OF_REFERENCES, false);
+        append('{');
+        if (facets.getCount() > 0) {
+            appendName(MIN, true);
+            appendInt(facets.getMinReferences());
+            appendName(MAX, false);
+            appendInt(facets.getMaxReferences());
+            append(',');
+        }
+        appendString(SUM);
+        append(':');
+        appendRaw(Long.toString(facets.getSumReferences()));
+        append('}');
+        append('}');
+        flush();
+    }
+
+    /**
+     * Write the given slow queries as {"slowQueries":[...]}, with their durations in milliseconds,
+     * and flush the buffer into the writer
+     * @param slowQueries
+     * @throws IOException
+     */
+    public void writeSlowQueries(final List<SlowQuery> slowQueries) throws IOException {
+        append('{');
+        appendName(SLOW_QUERIES, true);
+        append('[');
+        for (int i = 0; i < slowQueries.size(); i++) {
+            if (i > 0) {
+                append(',');
+            }
+            writeSlowQuery(slowQueries.get(i));
+        }
+        append(']');
+        append('}');
+        flush();
+    }
+
+    /**
+     * Write the given message as {"error":"..."} and flush the buffer into the writer
+     * @param message
+     * @throws IOException
+     */
+    public void writeError(final String message) throws IOException {
+        append('{');
+        appendString(ERROR);
+        append(':');
+        appendString(message);
+        append('}');
+        flush();
+    }
+
+    private void writeFilm(final FilmTable table, final int row, final int fields) throws IOException {
+        append('{');
+        boolean first = true;
+        if (FilmField.TITLE.isIn(fields)) {
+            appendName(TITLE, first);
+            appendString(table.getTitle(row));
+            first = false;
+        }
+        if (FilmField.YEAR.isIn(fields)) {
+            appendName(YEAR, first);
+            append('"');
+            appendInt(table.getYear(row));
+            append('"');
+            first = false;
+        }
+        if (FilmField.AWARDS.isIn(fields)) {
+            appendName(AWARDS, first);
+            appendInt(table.getAwards(row));
+            first = false;
+        }
+        if (FilmField.NOMINATIONS.isIn(fields)) {
+            appendName(NOMINATIONS, first);
+            appendInt(table.getNominations(row));
+            first = false;
+        }
+        if (FilmField.IS_BEST_PICTURE.isIn(fields)) {
+            appendName(IS_BEST_PICTURE, first);
+            appendRaw(table.isBestPicture(row) ? "true" : "false");
+            first = false;
+        }
+        if (FilmField.NUMBER_OF_REFERENCES.isIn(fields)) {
+            appendName(NUMBER_OF_REFERENCES, first);
+            appendInt(table.getNumberOfReferences(row));
+        }
+        append('}');
+    }
+
+    private void writeValueCounts(final FilmFacets.ValueCounts counts) throws IOException {
+        append('{');
+        for (int position = 0; position < counts.size(); position++) {
+            if (position > 0) {
+                append(',');
+            }
+            append('"');
+            appendInt(counts.getValue(position));
+            append('"');
+            append(':');
+            appendInt(counts.getCount(position));
+        }
+        append('}');
+    }
+
+    private void writeSlowQuery(final SlowQuery slowQuery) throws IOException {
+        append('{');
+        appendName(TIMESTAMP, true);
+        appendString(Instant.ofEpochMilli(slowQuery.getTimestamp()).toString());
+        appendName(CONTAINER_PATH, false);
+        appendString(slowQuery.getContainerPath());
+        appendName(QUERY, false);
+        appendString(slowQuery.getQuery());
+        appendName(SHAPE, false);
+        appendString(slowQuery.getShape());
+        appendName(EXAMINED_ROWS, false);
+        appendInt(slowQuery.getExaminedRows());
+        appendName(RETURNED_ROWS, false);
+        appendInt(slowQuery.getReturnedRows());
+        appendName(CACHE_HIT, false);
+        appendRaw(String.valueOf(slowQuery.isCacheHit()));
+        appendName(DURATION_MILLIS, false);
+        appendMillis(slowQuery.getTotalDuration());
+        appendName(PHASES, false);
+        append('{');
+        for (QueryTrace.Phase phase : QueryTrace.Phase.values()) {
+            appendName(phase.name().toLowerCase(Locale.ROOT), phase.ordinal() == 0);
+            appendMillis(slowQuery.getDuration(phase));
+        }
+        append('}');
+        append('}');
+    }
+
+    private void appendName(final String name, final boolean first) throws IOException {
+        if (!first) {
+            append(',');
+        }
+        appendString(name);
+        append(':');
+    }
+
+    private void appendString(final String value) throws IOException {
+        append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                append('\\');
+                append(c);
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                append('\\');
+                append('u');
+                append(HEX[(c >> 12) & 0xF]);
+                append(HEX[(c >> 8) & 0xF]);
+                append(HEX[(c >> 4) & 0xF]);
+                append(HEX[c & 0xF]);
+            } else {
+                append(c);
+            }
+        }
+        append('"');
+    }
+
+    private void appendRaw(final String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            append(value.charAt(i));
+        }
+    }
+
+    private void appendMillis(final long nanos) throws IOException {
+        appendRaw(String.format(Locale.ROOT, "%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    /**
+     * Write the decimal digits of the value straight into the buffer
+     */
+    private void appendInt(final int value) throws IOException {
+        if (value == Integer.MIN_VALUE) {
+            appendRaw(String.valueOf(value));
+            return;
+        }
+        int remaining = value;
+        if (remaining < 0) {
+            append('-');
+            remaining = -remaining;
+        }
+        int divisor = 1;
+        while (remaining / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            append((char) ('0' + remaining / divisor % 10));
+            divisor /= 10;
+        }
+    }
+
+    private void append(final char c) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = c;
+    }
+
+    private void flushBuffer() throws IOException {
+        writer.write(buffer, 0, position);
+        position = 0;
+    }
+
+    private void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+}
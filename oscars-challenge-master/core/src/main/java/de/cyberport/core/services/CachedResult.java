@@ -0,0 +1,131 @@
+package de.cyberport.core.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Result rows and serialized response of one query against one version of a film container index.
+ * The rows only depend on the index version, the body also on the version of the references.
+ * The gzip encoded body is compressed once, on its first request, and then kept with the result.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class CachedResult {
+
+    /**
+     * Below this size the gzip header and the saved bytes do not outweigh the compression work
+     */
+    public static final int MIN_COMPRESSIBLE_BYTES = 1024;
+
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    private final long indexVersion;
+    private final long referencesVersion;
+    private final int[] rows;
+    private final byte[] body;
+    private final String etag;
+    private final long createdAt;
+    private volatile byte[] gzipBody;
+
+    public CachedResult(final long indexVersion, final long referencesVersion, final int[] rows, final byte[] body,
+                        final String etag, final long createdAt) {
+        this.indexVersion = indexVersion;
+        this.referencesVersion = referencesVersion;
+        this.rows = rows;
+        this.body = body;
+        this.etag = etag;
+        this.createdAt = createdAt;
+    }
+
+    public long getIndexVersion() {
+        return indexVersion;
+    }
+
+    public long getReferencesVersion() {
+        return referencesVersion;
+    }
+
+    /**
+     * Result rows in response order, shared with the cache and therefore never to be modified
+     * @return
+     */
+    public int[] getRows() {
+        return rows;
+    }
+
+    /**
+     * UTF-8 encoded response body, shared with the cache and therefore never to be modified
+     * @return
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Check if the body is large enough for gzip to pay off
+     * @return
+     */
+    public boolean isCompressible() {
+        return body.length >= MIN_COMPRESSIBLE_BYTES;
+    }
+
+    /**
+     * Gzip encoded response body, compressed on the first call and shared with the cache afterwards
+     * @return
+     */
+    public byte[] getGzipBody() {
+        byte[] compressed = gzipBody;
+        if (compressed == null) {
+            compressed = gzip(body);
+            gzipBody = compressed;
+        }
+        return compressed;
+    }
+
+    /**
+     * Strong entity tag of the gzip encoded body, it differs from the one of the plain body
+     * @return
+     */
+    public String getGzipEtag() {
+        return etag.substring(0, etag.length() - 1) + GZIP_ETAG_SUFFIX + '"';
+    }
+
+    /**
+     * Strong entity tag of the body, quoted as sent in the ETag header
+     * @return
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Bytes held by the rows and the bodies, the gzip encoded body only counts once it is compressed
+     * @return
+     */
+    public long getSize() {
+        final byte[] compressed = gzipBody;
+        return (long) rows.length * Integer.BYTES + body.length + (compressed != null ? compressed.length : 0);
+    }
+
+    private static byte[] gzip(final byte[] body) {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {
+            {
+                // compressed once per cached result, so the best ratio is worth its time
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Compression into memory failed", e);
+        }
+        return compressed.toByteArray();
+    }
+}
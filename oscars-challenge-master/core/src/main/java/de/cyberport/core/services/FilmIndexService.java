@@ -0,0 +1,38 @@
+package de.cyberport.core.services;
+
+import de.cyberport.core.index.FilmIndex;
+import org.apache.sling.api.resource.Resource;
+
+import java.util.Map;
+
+/**
+ * Keeps one in-memory {@link FilmIndex} per film container, so that queries do not
+ * have to traverse and adapt the children of the container on every request.
+ *
+ * @author ritendra_singh
+ *
+ */
+public interface FilmIndexService {
+
+    /**
+     * Return the index of the given film container, building it on first access. The index is shared
+     * by all users and built with the film-index service user, not with the resolver of the container.
+     * @param container
+     * @return
+     */
+    FilmIndex getIndex(Resource container);
+
+    /**
+     * Drop the index of the container with the given path, it is rebuilt on next access
+     * @param containerPath
+     */
+    void invalidate(String containerPath);
+
+    /**
+     * Update the numberOfReferences of the given films in place, without rebuilding any index.
+     * Readers keep the snapshot they already hold and see the new values with their next lookup.
+     * @param referencesByPath numberOfReferences per absolute path of the film entry
+     * @return number of indexed films whose value changed
+     */
+    int updateReferences(Map<String, Integer> referencesByPath);
+}
@@ -0,0 +1,19 @@
+package de.cyberport.core.services;
+
+import de.cyberport.core.metrics.QueryMetrics;
+
+/**
+ * Holds the {@link QueryMetrics} of the film servlets for the lifetime of the bundle, the servlets
+ * record into them and the JMX MBean of the implementation publishes them.
+ *
+ * @author ritendra_singh
+ *
+ */
+public interface FilmQueryMetrics {
+
+    /**
+     * Metrics recorded since the activation or the last reset
+     * @return
+     */
+    QueryMetrics getMetrics();
+}
@@ -0,0 +1,42 @@
+package de.cyberport.core.services;
+
+import com.adobe.granite.jmx.annotation.Description;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Management interface of the {@link FilmQueryMetrics}. Latencies are in milliseconds.
+ *
+ * @author ritendra_singh
+ *
+ */
+@Description("Timings and outcomes of the film container queries")
+public interface FilmQueryMetricsMBean {
+
+    @Description("Number of requests")
+    long getRequestCount();
+
+    @Description("Number of requests rejected because of invalid parameters")
+    long getRejectedCount();
+
+    @Description("Share of the valid requests answered from the result cache")
+    double getCacheHitRate();
+
+    @Description("Share of the valid requests answered from an index that was already built")
+    double getIndexHitRate();
+
+    @Description("Number of film container indexes built")
+    long getIndexBuildCount();
+
+    @Description("Latency percentiles per phase of the request and of the whole request")
+    TabularData getPhaseLatencies();
+
+    @Description("Percentiles of the number of films per response")
+    TabularData getResultSizes();
+
+    @Description("Number of requests per combination of filtered properties and sort key")
+    TabularData getQueryShapes();
+
+    @Description("Forget all recorded metrics")
+    void reset();
+}
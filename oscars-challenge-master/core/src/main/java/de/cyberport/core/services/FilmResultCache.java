@@ -0,0 +1,38 @@
+package de.cyberport.core.services;
+
+/**
+ * Bounded cache of serialized query results, keyed by container path and normalized
+ * request parameters, separated by a '?'. Entries are only valid for the index version they were computed from,
+ * so a change of the films below a container invalidates all of its entries. A references update
+ * keeps the index version, so the cached rows stay valid and only the body has to be written again.
+ *
+ * @author ritendra_singh
+ *
+ */
+public interface FilmResultCache {
+
+    /**
+     * Return the cached result of the key, null when there is none for the given index version
+     * @param key
+     * @param indexVersion
+     * @return
+     */
+    CachedResult get(String key, long indexVersion);
+
+    /**
+     * Cache the rows and the body of the key for the given index and references version
+     * @param key
+     * @param indexVersion
+     * @param referencesVersion
+     * @param rows
+     * @param body
+     * @return the cached result including its entity tag
+     */
+    CachedResult put(String key, long indexVersion, long referencesVersion, int[] rows, byte[] body);
+
+    /**
+     * Value of the Cache-Control header sent with cacheable responses
+     * @return
+     */
+    String getCacheControl();
+}
@@ -0,0 +1,43 @@
+package de.cyberport.core.services;
+
+import de.cyberport.core.metrics.SlowQuery;
+
+import java.util.List;
+
+/**
+ * Keeps the most recent film queries that took longer than a configured threshold, a sample of
+ * them when configured, to diagnose the parameter combinations that are slow.
+ *
+ * @author ritendra_singh
+ *
+ */
+public interface FilmSlowQueryLog {
+
+    /**
+     * Check if a query of the given duration is to be logged: it exceeds the threshold and is
+     * part of the sample
+     * @param nanos duration of the query
+     * @return
+     */
+    boolean isLogged(long nanos);
+
+    /**
+     * Log the given slow query, the oldest entry is dropped when the log is full
+     * @param slowQuery
+     */
+    void add(SlowQuery slowQuery);
+
+    /**
+     * Check if the logged queries may be listed by the slowqueries selector of the containers. They
+     * reveal the queries of all users, so the selector is disabled unless configured otherwise.
+     * @return
+     */
+    boolean isListingEnabled();
+
+    /**
+     * Logged queries of the container with the given path, newest first
+     * @param containerPath
+     * @return
+     */
+    List<SlowQuery> getEntries(String containerPath);
+}
@@ -0,0 +1,549 @@
+package de.cyberport.core.services.impl;
+
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmSnapshot;
+import de.cyberport.core.index.FilmTable;
+import de.cyberport.core.index.ParallelScan;
+import de.cyberport.core.services.FilmIndexService;
+import de.cyberport.core.services.FilmQueryMetrics;
+import org.apache.commons.lang.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChangeListener;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static de.cyberport.core.constants.OscarConstants.NUMBER_OF_REFERENCES;
+
+/**
+ * Default {@link FilmIndexService}. Indexes are built lazily per container path and
+ * dropped again as soon as a film entry below the container is added or removed.
+ * Changed film entries are read from the container on its next lookup instead. When they differ
+ * from their rows only in the numberOfReferences property, the new values are applied to the
+ * existing index, otherwise the index is dropped. The change events are not required to carry the
+ * names of the changed properties, so the entries are compared with the index instead.
+ *
+ * Indexes are shared by all users, so they are built and read with the resource resolver of the
+ * film-index service user instead of the resolver of the first requesting user.
+ *
+ * Every index is an immutable snapshot, published through an {@link AtomicReference} per container.
+ * Lookups only read the current snapshot, updates of the references compare and set a copy, so
+ * requests never wait for each other once the index of their container is built. While an index is
+ * built, concurrent lookups of the same container wait for the future of that build, lookups of
+ * other containers are not blocked by it.
+ *
+ * Walks over the sort orders of large containers are split on a dedicated {@link ParallelScan}
+ * when the configured number of threads is above one.
+ *
+ * With a snapshot directory configured, every index built from the repository is also written
+ * into a {@link FilmSnapshot} file. After a restart the first lookup of a container restores its
+ * index from that file instead of traversing the container, and the repository is compared with
+ * it in the background, replacing the restored index when the films changed in the meantime or
+ * dropping it when the container cannot be read.
+ * Snapshot files are written and deleted by a single background thread in the order of the builds
+ * and invalidations, and a container is never restored while the deletion of its snapshot is pending.
+ *
+ * The resource change events do not carry the resource type of the changed resource, so
+ * every change below an indexed container is treated as a change of a test/filmEntry.
+ *
+ * @author ritendra_singh
+ *
+ */
+@Component(
+        service = { FilmIndexService.class, ResourceChangeListener.class },
+        immediate = true,
+        property = {
+                ResourceChangeListener.CHANGES + "=ADDED",
+                ResourceChangeListener.CHANGES + "=CHANGED",
+                ResourceChangeListener.CHANGES + "=REMOVED"
+        })
+@Designate(ocd = FilmIndexServiceImpl.Config.class)
+@ServiceDescription("Oscar Film Index Service")
+public class FilmIndexServiceImpl implements FilmIndexService, ResourceChangeListener {
+
+    @ObjectClassDefinition(name = "Oscar Film Index Service",
+            description = "In-memory index of the films below test/filmEntryContainer resources")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Observed paths",
+                description = "Paths observed for film entry changes, indexed containers must be located below them")
+        String[] resource_paths() default { "/content" };
+
+        @AttributeDefinition(name = "Parallel scan threads",
+                description = "Threads scanning large containers in segments, 1 to scan on the request thread only")
+        int parallelScanThreads() default 4;
+
+        @AttributeDefinition(name = "Parallel scan threshold",
+                description = "Minimum number of films a scan is expected to test to be split into segments")
+        int parallelScanThreshold() default 200000;
+
+        @AttributeDefinition(name = "Parallel scan segment size",
+                description = "Number of films tested by one task of a scan")
+        int parallelScanSegmentSize() default 32768;
+
+        @AttributeDefinition(name = "Snapshot directory",
+                description = "Directory of the files restoring the indexes after a restart, empty to disable them")
+        String snapshotDirectory() default "";
+    }
+
+    private static final String SUBSERVICE = "film-index";
+    private static final String SNAPSHOT_EXTENSION = ".films";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, AtomicReference<FilmIndex>> indexes = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<AtomicReference<FilmIndex>>> builds = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> pendingChanges = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> pendingDeletions = new ConcurrentHashMap<>();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Reference
+    private ResourceResolverFactory resourceResolverFactory;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private volatile FilmQueryMetrics filmQueryMetrics;
+
+    private ParallelScan parallelScan;
+
+    private Path snapshotDirectory;
+
+    private ExecutorService snapshotExecutor;
+
+    @Activate
+    protected void activate(final Config config) {
+        logger.debug("Observing film entry changes below {}", Arrays.toString(config.resource_paths()));
+        if (config.parallelScanThreads() > 1) {
+            parallelScan = new ParallelScan(config.parallelScanThreads(), config.parallelScanThreshold(),
+                    Math.max(1, config.parallelScanSegmentSize()));
+        }
+        if (StringUtils.isNotBlank(config.snapshotDirectory())) {
+            try {
+                snapshotDirectory = Files.createDirectories(Paths.get(config.snapshotDirectory()));
+                snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "film-index-snapshots");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            } catch (IOException e) {
+                logger.warn("Film index snapshots are disabled, {} is no directory", config.snapshotDirectory(), e);
+            }
+        }
+    }
+
+    @Override
+    public FilmIndex getIndex(final Resource container) {
+        final Set<String> pendingNames = pendingChanges.get(container.getPath());
+        if (pendingNames != null && !pendingNames.isEmpty()) {
+            applyPendingChanges(container.getPath(), pendingNames);
+        }
+        return snapshot(container.getPath()).get();
+    }
+
+    @Override
+    public void invalidate(final String containerPath) {
+        final Long invalidation = drop(containerPath);
+        if (invalidation != null) {
+            snapshotExecutor.execute(() -> deleteSnapshot(containerPath, invalidation));
+        }
+    }
+
+    @Override
+    public int updateReferences(final Map<String, Integer> referencesByPath) {
+        final Map<String, Map<String, Integer>> referencesByContainer = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : referencesByPath.entrySet()) {
+            referencesByContainer
+                    .computeIfAbsent(ResourceUtil.getParent(entry.getKey()), path -> new HashMap<>())
+                    .put(ResourceUtil.getName(entry.getKey()), entry.getValue());
+        }
+
+        int updated = 0;
+        for (Map.Entry<String, Map<String, Integer>> entry : referencesByContainer.entrySet()) {
+            updated += updateContainerReferences(entry.getKey(), entry.getValue());
+        }
+        return updated;
+    }
+
+    @Override
+    public void onChange(final List<ResourceChange> changes) {
+        for (ResourceChange change : changes) {
+            final String changedPath = change.getPath();
+            final String parentPath = ResourceUtil.getParent(changedPath);
+            if (change.getType() == ResourceChange.ChangeType.CHANGED && parentPath != null
+                    && indexes.containsKey(parentPath)) {
+                pendingChanges
+                        .computeIfAbsent(parentPath, path -> ConcurrentHashMap.newKeySet())
+                        .add(ResourceUtil.getName(changedPath));
+                continue;
+            }
+            final Set<String> containerPaths = new HashSet<>(indexes.keySet());
+            containerPaths.addAll(builds.keySet());
+            for (String containerPath : containerPaths) {
+                if (isAffected(containerPath, changedPath)) {
+                    invalidate(containerPath);
+                }
+            }
+        }
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        indexes.clear();
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdown();
+            try {
+                if (!snapshotExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.warn("Film index snapshots are still being written");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (parallelScan != null) {
+            parallelScan.shutdown();
+        }
+    }
+
+    /**
+     * Reference to the current index of the container. The index is built by the first caller, concurrent
+     * callers for the same container wait for the future of its build. A build invalidated while it is
+     * running is returned to its callers, but not published.
+     */
+    private AtomicReference<FilmIndex> snapshot(final String containerPath) {
+        final AtomicReference<FilmIndex> snapshot = indexes.get(containerPath);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        final CompletableFuture<AtomicReference<FilmIndex>> build = new CompletableFuture<>();
+        final CompletableFuture<AtomicReference<FilmIndex>> running = builds.putIfAbsent(containerPath, build);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            AtomicReference<FilmIndex> built = indexes.get(containerPath);
+            if (built == null) {
+                final long started = System.nanoTime();
+                final FilmIndex restored = restore(containerPath);
+                built = new AtomicReference<>(restored != null ? restored : load(containerPath));
+                final FilmQueryMetrics metrics = filmQueryMetrics;
+                if (metrics != null) {
+                    metrics.getMetrics().recordIndexBuild(System.nanoTime() - started);
+                }
+                indexes.put(containerPath, built);
+                if (!builds.remove(containerPath, build)) {
+                    indexes.remove(containerPath, built);
+                } else if (restored != null) {
+                    // queued once published, so the verification finds the restored index it may replace
+                    snapshotExecutor.execute(() -> verifySnapshot(restored));
+                }
+            }
+            build.complete(built);
+            return built;
+        } catch (RuntimeException e) {
+            build.completeExceptionally(e);
+            throw e;
+        } finally {
+            builds.remove(containerPath, build);
+        }
+    }
+
+    private static AtomicReference<FilmIndex> await(final CompletableFuture<AtomicReference<FilmIndex>> build) {
+        try {
+            return build.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Build the index of the container with the service user and write its snapshot in the background
+     */
+    private FilmIndex load(final String containerPath) {
+        final FilmIndex index;
+        try (ResourceResolver resolver = getServiceResourceResolver()) {
+            final Resource container = resolver.getResource(containerPath);
+            if (container == null) {
+                throw new IllegalStateException("Film container " + containerPath
+                        + " cannot be read by the " + SUBSERVICE + " service user");
+            }
+            index = FilmIndex.build(container, parallelScan);
+        } catch (LoginException e) {
+            throw new IllegalStateException("Cannot log in the " + SUBSERVICE + " service user", e);
+        }
+        if (snapshotExecutor != null) {
+            snapshotExecutor.execute(() -> writeSnapshot(index));
+        }
+        return index;
+    }
+
+    /**
+     * Index of the container read from its snapshot file, null when there is none or when it cannot be read
+     */
+    private FilmIndex restore(final String containerPath) {
+        if (snapshotExecutor == null || pendingDeletions.containsKey(containerPath)) {
+            return null;
+        }
+        final Path file = getSnapshotFile(containerPath);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            final FilmIndex index = FilmSnapshot.read(file, parallelScan);
+            if (!containerPath.equals(index.getContainerPath())) {
+                logger.warn("Ignoring film snapshot {} of {}", file, index.getContainerPath());
+                return null;
+            }
+            logger.info("Restored film index for {} with {} entries from {}", containerPath, index.size(), file);
+            return index;
+        } catch (IOException e) {
+            logger.warn("Ignoring film snapshot {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compare the restored index with the films of its container and replace it, including its
+     * snapshot, when they differ. The restored index is dropped when the comparison cannot run, as
+     * the films may have changed while the instance was down. An index published after the restored
+     * one, by an update of the references or by a rebuild, is kept. It runs on the snapshot thread,
+     * so the snapshot of a dropped index is deleted right away.
+     */
+    private void verifySnapshot(final FilmIndex restored) {
+        final String containerPath = restored.getContainerPath();
+        try (ResourceResolver resolver = getServiceResourceResolver()) {
+            final Resource container = resolver.getResource(containerPath);
+            if (container == null) {
+                logger.info("Film container {} of the restored index no longer exists", containerPath);
+                dropRestored(restored);
+                return;
+            }
+            final FilmIndex current = FilmIndex.build(container, parallelScan);
+            if (FilmSnapshot.checksum(current) == FilmSnapshot.checksum(restored)) {
+                logger.debug("Verified the restored film index for {}", containerPath);
+                return;
+            }
+
+            final AtomicReference<FilmIndex> snapshot = indexes.get(containerPath);
+            if (snapshot == null) {
+                return;
+            }
+            FilmIndex published;
+            do {
+                published = snapshot.get();
+                if (published.getVersion() != restored.getVersion()) {
+                    return;
+                }
+            } while (!snapshot.compareAndSet(published, current));
+            logger.info("Replaced the outdated restored film index for {}", containerPath);
+            writeSnapshot(current);
+        } catch (LoginException | RuntimeException e) {
+            logger.warn("Dropping the restored film index for {}, it cannot be verified", containerPath, e);
+            dropRestored(restored);
+        }
+    }
+
+    /**
+     * Drop the index of the container and delete its snapshot, as long as the restored index is still
+     * the published one
+     * @param restored
+     */
+    private void dropRestored(final FilmIndex restored) {
+        final String containerPath = restored.getContainerPath();
+        final AtomicReference<FilmIndex> snapshot = indexes.get(containerPath);
+        if (snapshot == null || snapshot.get().getVersion() != restored.getVersion()) {
+            return;
+        }
+        final long invalidation = invalidations.incrementAndGet();
+        pendingDeletions.put(containerPath, invalidation);
+        if (indexes.remove(containerPath, snapshot)) {
+            pendingChanges.remove(containerPath);
+            logger.debug("Invalidated film index for {}", containerPath);
+            deleteSnapshot(containerPath, invalidation);
+        } else {
+            pendingDeletions.remove(containerPath, invalidation);
+        }
+    }
+
+    private ResourceResolver getServiceResourceResolver() throws LoginException {
+        return resourceResolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE));
+    }
+
+    /**
+     * Drop the index of the container and mark its snapshot for deletion
+     * @param containerPath
+     * @return number of the invalidation that has to delete the snapshot, null without snapshots
+     */
+    private Long drop(final String containerPath) {
+        pendingChanges.remove(containerPath);
+        final Long invalidation = snapshotExecutor != null ? invalidations.incrementAndGet() : null;
+        if (invalidation != null) {
+            pendingDeletions.put(containerPath, invalidation);
+        }
+        builds.remove(containerPath);
+        if (indexes.remove(containerPath) != null) {
+            logger.debug("Invalidated film index for {}", containerPath);
+        }
+        return invalidation;
+    }
+
+    private void writeSnapshot(final FilmIndex index) {
+        final Path file = getSnapshotFile(index.getContainerPath());
+        try {
+            FilmSnapshot.write(index, file);
+            logger.debug("Wrote film snapshot {}", file);
+        } catch (IOException e) {
+            logger.warn("Cannot write film snapshot {}", file, e);
+        }
+    }
+
+    private void deleteSnapshot(final String containerPath, final long invalidation) {
+        try {
+            Files.deleteIfExists(getSnapshotFile(containerPath));
+        } catch (IOException e) {
+            logger.warn("Cannot delete the film snapshot of {}", containerPath, e);
+        }
+        pendingDeletions.remove(containerPath, invalidation);
+    }
+
+    private Path getSnapshotFile(final String containerPath) {
+        try {
+            return snapshotDirectory.resolve(URLEncoder.encode(containerPath, StandardCharsets.UTF_8.name())
+                    + SNAPSHOT_EXTENSION);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read the pending changed film entries of the container with the service user and apply their
+     * numberOfReferences to its index, or drop the index when any other property changed or an entry
+     * cannot be read. Names are drained one by one, so names added concurrently are either applied
+     * now or kept for the next lookup.
+     * @param containerPath
+     * @param pendingNames
+     */
+    private void applyPendingChanges(final String containerPath, final Set<String> pendingNames) {
+        final AtomicReference<FilmIndex> snapshot = indexes.get(containerPath);
+        if (snapshot == null) {
+            return;
+        }
+        final FilmTable table = snapshot.get().getTable();
+        final Map<String, Integer> referencesByName = new HashMap<>();
+        try (ResourceResolver resolver = getServiceResourceResolver()) {
+            final Resource container = resolver.getResource(containerPath);
+            for (Iterator<String> names = pendingNames.iterator(); names.hasNext(); ) {
+                final String name = names.next();
+                names.remove();
+                final Resource child = container != null ? container.getChild(name) : null;
+                final int row = table.getRow(name);
+                if (child == null || row < 0 || !table.matchesExceptReferences(row, child.getValueMap())) {
+                    logger.debug("Film entry {} of {} changed beyond its numberOfReferences", name, containerPath);
+                    invalidate(containerPath);
+                    return;
+                }
+                referencesByName.put(name, child.getValueMap().get(NUMBER_OF_REFERENCES, 0));
+            }
+        } catch (LoginException e) {
+            logger.warn("Cannot read the changed film entries of {}", containerPath, e);
+            invalidate(containerPath);
+            return;
+        }
+        updateContainerReferences(containerPath, referencesByName);
+    }
+
+    /**
+     * Publish a copy of the container index with the updated references column
+     * @param containerPath
+     * @param referencesByName
+     * @return number of films whose value changed
+     */
+    private int updateContainerReferences(final String containerPath, final Map<String, Integer> referencesByName) {
+        final AtomicReference<FilmIndex> snapshot = indexes.get(containerPath);
+        if (snapshot == null) {
+            return 0;
+        }
+        FilmIndex current;
+        FilmIndex updated;
+        do {
+            current = snapshot.get();
+            updated = current.withNumberOfReferences(referencesByName);
+        } while (updated != current && !snapshot.compareAndSet(current, updated));
+
+        int count = 0;
+        for (Map.Entry<String, Integer> entry : referencesByName.entrySet()) {
+            final int row = current.getTable().getRow(entry.getKey());
+            if (row >= 0 && entry.getValue() != null
+                    && current.getTable().getNumberOfReferences(row) != entry.getValue()) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            logger.debug("Updated numberOfReferences of {} films in {}", count, containerPath);
+        }
+        return count;
+    }
+
+    /**
+     * A container is affected by changes of itself, of its descendants and of its ancestors
+     * @param containerPath
+     * @param changedPath
+     * @return
+     */
+    private static boolean isAffected(final String containerPath, final String changedPath) {
+        return isSameOrDescendant(changedPath, containerPath) || isSameOrDescendant(containerPath, changedPath);
+    }
+
+    private static boolean isSameOrDescendant(final String path, final String ancestorPath) {
+        return path.equals(ancestorPath)
+                || "/".equals(ancestorPath)
+                || path.startsWith(ancestorPath + "/");
+    }
+}
@@ -0,0 +1,150 @@
+package de.cyberport.core.services.impl;
+
+import com.adobe.granite.jmx.annotation.AnnotatedStandardMBean;
+import de.cyberport.core.metrics.Histogram;
+import de.cyberport.core.metrics.QueryMetrics;
+import de.cyberport.core.metrics.QueryTrace;
+import de.cyberport.core.services.FilmQueryMetrics;
+import de.cyberport.core.services.FilmQueryMetricsMBean;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+
+import javax.management.DynamicMBean;
+import javax.management.NotCompliantMBeanException;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default {@link FilmQueryMetrics}, registered with the JMX whiteboard as
+ * de.cyberport.core:type=FilmQueryMetrics.
+ *
+ * @author ritendra_singh
+ *
+ */
+@Component(
+        service = { FilmQueryMetrics.class, DynamicMBean.class },
+        immediate = true,
+        property = { "jmx.objectname=de.cyberport.core:type=FilmQueryMetrics" })
+@ServiceDescription("Oscar Film Query Metrics")
+public class FilmQueryMetricsImpl extends AnnotatedStandardMBean implements FilmQueryMetrics, FilmQueryMetricsMBean {
+
+    private static final String[] HISTOGRAM_ITEMS = { "name", "count", "mean", "p50", "p95", "p99" };
+    private static final String[] SHAPE_ITEMS = { "shape", "count" };
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final CompositeType HISTOGRAM_TYPE;
+    private static final TabularType HISTOGRAMS_TYPE;
+    private static final CompositeType SHAPE_TYPE;
+    private static final TabularType SHAPES_TYPE;
+
+    static {
+        try {
+            HISTOGRAM_TYPE = new CompositeType("histogram", "Percentiles of the recorded values", HISTOGRAM_ITEMS,
+                    HISTOGRAM_ITEMS, new OpenType<?>[] {
+                            SimpleType.STRING, SimpleType.LONG, SimpleType.DOUBLE,
+                            SimpleType.DOUBLE, SimpleType.DOUBLE, SimpleType.DOUBLE });
+            HISTOGRAMS_TYPE = new TabularType("histograms", "Percentiles per name", HISTOGRAM_TYPE,
+                    new String[] { "name" });
+            SHAPE_TYPE = new CompositeType("shape", "Requests of one query shape", SHAPE_ITEMS, SHAPE_ITEMS,
+                    new OpenType<?>[] { SimpleType.STRING, SimpleType.LONG });
+            SHAPES_TYPE = new TabularType("shapes", "Requests per query shape", SHAPE_TYPE, new String[] { "shape" });
+        } catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final QueryMetrics metrics = new QueryMetrics();
+
+    public FilmQueryMetricsImpl() throws NotCompliantMBeanException {
+        super(FilmQueryMetricsMBean.class);
+    }
+
+    @Override
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return metrics.getRequestCount();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return metrics.getRejectedCount();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        return metrics.getCacheHitRate();
+    }
+
+    @Override
+    public double getIndexHitRate() {
+        return metrics.getIndexHitRate();
+    }
+
+    @Override
+    public long getIndexBuildCount() {
+        return metrics.getIndexBuilds().getCount();
+    }
+
+    @Override
+    public TabularData getPhaseLatencies() {
+        final TabularDataSupport latencies = new TabularDataSupport(HISTOGRAMS_TYPE);
+        for (QueryTrace.Phase phase : QueryTrace.Phase.values()) {
+            latencies.put(histogram(phase.name().toLowerCase(Locale.ROOT), metrics.getPhase(phase), NANOS_PER_MILLI));
+        }
+        latencies.put(histogram("total", metrics.getTotal(), NANOS_PER_MILLI));
+        latencies.put(histogram("indexBuild", metrics.getIndexBuilds(), NANOS_PER_MILLI));
+        return latencies;
+    }
+
+    @Override
+    public TabularData getResultSizes() {
+        final TabularDataSupport sizes = new TabularDataSupport(HISTOGRAMS_TYPE);
+        sizes.put(histogram("films", metrics.getResultSizes(), 1));
+        return sizes;
+    }
+
+    @Override
+    public TabularData getQueryShapes() {
+        final TabularDataSupport shapes = new TabularDataSupport(SHAPES_TYPE);
+        for (Map.Entry<String, Long> entry : metrics.getShapeCounts().entrySet()) {
+            shapes.put(composite(SHAPE_TYPE, SHAPE_ITEMS, new Object[] { entry.getKey(), entry.getValue() }));
+        }
+        return shapes;
+    }
+
+    @Override
+    public void reset() {
+        metrics.reset();
+    }
+
+    private static CompositeDataSupport histogram(final String name, final Histogram histogram, final double unit) {
+        return composite(HISTOGRAM_TYPE, HISTOGRAM_ITEMS, new Object[] {
+                name,
+                histogram.getCount(),
+                histogram.getMean() / unit,
+                histogram.getPercentile(50) / unit,
+                histogram.getPercentile(95) / unit,
+                histogram.getPercentile(99) / unit });
+    }
+
+    private static CompositeDataSupport composite(final CompositeType type, final String[] items, final Object[] values) {
+        try {
+            return new CompositeDataSupport(type, items, values);
+        } catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package de.cyberport.core.services.impl;
+
+import de.cyberport.core.services.CachedResult;
+import de.cyberport.core.services.FilmResultCache;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link FilmResultCache}. Entries expire after a configurable age and the oldest
+ * entries are evicted once the configured number of entries or bytes is exceeded. Only one thread
+ * evicts at a time, the others keep going without waiting for it, so the configured limits are only
+ * exceeded by the entries put while an eviction runs. Bodies compressed after their put are counted
+ * from the next eviction on, which sums the sizes of all remaining entries again.
+ *
+ * @author ritendra_singh
+ *
+ */
+@Component(service = FilmResultCache.class, immediate = true)
+@Designate(ocd = FilmResultCacheImpl.Config.class)
+@ServiceDescription("Oscar Film Result Cache")
+public class FilmResultCacheImpl implements FilmResultCache {
+
+    @ObjectClassDefinition(name = "Oscar Film Result Cache",
+            description = "Cache of serialized film container query results")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Maximum entries", description = "Maximum number of cached query results")
+        int maxEntries() default 1000;
+
+        @AttributeDefinition(name = "Maximum size",
+                description = "Maximum bytes of the cached result rows and bodies, including the gzip encoded ones")
+        long maxBytes() default 64L * 1024 * 1024;
+
+        @AttributeDefinition(name = "Maximum age", description = "Seconds after which a cached query result expires")
+        int maxAgeSeconds() default 300;
+
+        @AttributeDefinition(name = "Cache-Control", description = "Value of the Cache-Control response header")
+        String cacheControl() default "max-age=60";
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, CachedResult> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private volatile int maxEntries;
+    private volatile long maxBytes;
+    private volatile long maxAgeMillis;
+    private volatile String cacheControl;
+
+    @Activate
+    @Modified
+    protected void activate(final Config config) {
+        this.maxEntries = Math.max(1, config.maxEntries());
+        this.maxBytes = Math.max(1, config.maxBytes());
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(config.maxAgeSeconds());
+        this.cacheControl = config.cacheControl();
+        clear();
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        clear();
+    }
+
+    @Override
+    public CachedResult get(final String key, final long indexVersion) {
+        final CachedResult result = entries.get(key);
+        if (result == null) {
+            return null;
+        }
+        if (result.getIndexVersion() != indexVersion || isExpired(result, System.currentTimeMillis())) {
+            remove(key, result);
+            return null;
+        }
+        return result;
+    }
+
+    @Override
+    public CachedResult put(final String key, final long indexVersion, final long referencesVersion,
+                            final int[] rows, final byte[] body) {
+        final CachedResult result = new CachedResult(indexVersion, referencesVersion, rows, body, etag(body),
+                System.currentTimeMillis());
+        final CachedResult previous = entries.put(key, result);
+        bytes.addAndGet(previous != null ? result.getSize() - previous.getSize() : result.getSize());
+        // the evicting thread checks the size again once done, so entries put meanwhile are not missed
+        while ((entries.size() > maxEntries || bytes.get() > maxBytes) && evicting.compareAndSet(false, true)) {
+            try {
+                evict();
+            } finally {
+                evicting.set(false);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Drop the expired entries and the ones of superseded index versions and, if that is not enough,
+     * the oldest ones. A tenth of the maximum entries and bytes is freed at once, so that eviction does
+     * not run again on every following put.
+     */
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        final Map<String, Long> latestVersions = new HashMap<>();
+        entries.forEach((key, result) -> latestVersions.merge(getContainerPath(key), result.getIndexVersion(),
+                Math::max));
+        entries.entrySet().removeIf(entry -> isExpired(entry.getValue(), now) || entry.getValue().getIndexVersion()
+                < latestVersions.getOrDefault(getContainerPath(entry.getKey()), Long.MIN_VALUE));
+
+        final List<Map.Entry<String, CachedResult>> remaining = new ArrayList<>(entries.entrySet());
+        final int maxRemainingEntries = maxEntries - maxEntries / 10;
+        final long maxRemainingBytes = maxBytes - maxBytes / 10;
+        int count = remaining.size();
+        long size = remaining.stream().mapToLong(entry -> entry.getValue().getSize()).sum();
+        if (count > maxRemainingEntries || size > maxRemainingBytes) {
+            remaining.sort(Comparator.comparingLong(entry -> entry.getValue().getCreatedAt()));
+            for (int i = 0; i < remaining.size() && (count > maxRemainingEntries || size > maxRemainingBytes); i++) {
+                final Map.Entry<String, CachedResult> entry = remaining.get(i);
+                if (entries.remove(entry.getKey(), entry.getValue())) {
+                    count--;
+                    size -= entry.getValue().getSize();
+                }
+            }
+        }
+        bytes.set(size);
+    }
+
+    private void remove(final String key, final CachedResult result) {
+        if (entries.remove(key, result)) {
+            bytes.addAndGet(-result.getSize());
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        bytes.set(0);
+    }
+
+    /**
+     * Container path of a cache key, including the extension of the format, in front of the request parameters
+     * @param key
+     * @return
+     */
+    private static String getContainerPath(final String key) {
+        final int query = key.indexOf('?');
+        return query >= 0 ? key.substring(0, query) : key;
+    }
+
+    private boolean isExpired(final CachedResult result, final long now) {
+        return now - result.getCreatedAt() >= maxAgeMillis;
+    }
+
+    /**
+     * Strong entity tag derived from the content, so it stays valid across index rebuilds and restarts
+     * @param body
+     * @return
+     */
+    private static String etag(final byte[] body) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            final char[] etag = new char[34];
+            etag[0] = '"';
+            for (int i = 0; i < 16; i++) {
+                etag[1 + i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                etag[2 + i * 2] = HEX[digest[i] & 0xF];
+            }
+            etag[33] = '"';
+            return new String(etag);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM", e);
+        }
+    }
+}
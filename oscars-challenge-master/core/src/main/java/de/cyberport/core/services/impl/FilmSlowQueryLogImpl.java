@@ -0,0 +1,91 @@
+package de.cyberport.core.services.impl;
+
+import de.cyberport.core.metrics.SlowQuery;
+import de.cyberport.core.metrics.SlowQueryLog;
+import de.cyberport.core.services.FilmSlowQueryLog;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default {@link FilmSlowQueryLog}, it keeps the logged queries in memory in a {@link SlowQueryLog}.
+ * A changed configuration starts with an empty log.
+ *
+ * @author ritendra_singh
+ *
+ */
+@Component(service = FilmSlowQueryLog.class, immediate = true)
+@Designate(ocd = FilmSlowQueryLogImpl.Config.class)
+@ServiceDescription("Oscar Film Slow Query Log")
+public class FilmSlowQueryLogImpl implements FilmSlowQueryLog {
+
+    @ObjectClassDefinition(name = "Oscar Film Slow Query Log",
+            description = "In-memory log of the slowest film container queries")
+    public @interface Config {
+
+        @AttributeDefinition(name = "Threshold", description = "Milliseconds above which a query is slow")
+        long thresholdMillis() default 100;
+
+        @AttributeDefinition(name = "Sample rate",
+                description = "Share of the slow queries that are logged, between 0 (none) and 1 (all)")
+        double sampleRate() default 1;
+
+        @AttributeDefinition(name = "Capacity", description = "Number of most recent slow queries kept")
+        int capacity() default 100;
+
+        @AttributeDefinition(name = "Listing enabled",
+                description = "List the slow queries of a container with its slowqueries selector, "
+                        + "they include the queries of all users and should not be enabled on publish")
+        boolean listingEnabled() default false;
+    }
+
+    private volatile long thresholdNanos;
+    private volatile double sampleRate;
+    private volatile boolean listingEnabled;
+    private volatile SlowQueryLog log;
+
+    @Activate
+    @Modified
+    protected void activate(final Config config) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.thresholdMillis()));
+        this.sampleRate = Math.max(0, Math.min(1, config.sampleRate()));
+        this.listingEnabled = config.listingEnabled();
+        this.log = new SlowQueryLog(Math.max(1, config.capacity()));
+    }
+
+    @Override
+    public boolean isLogged(final long nanos) {
+        return nanos > thresholdNanos && sampleRate > 0
+                && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    @Override
+    public void add(final SlowQuery slowQuery) {
+        log.add(slowQuery);
+    }
+
+    @Override
+    public boolean isListingEnabled() {
+        return listingEnabled;
+    }
+
+    @Override
+    public List<SlowQuery> getEntries(final String containerPath) {
+        final List<SlowQuery> entries = new ArrayList<>();
+        for (SlowQuery slowQuery : log.getEntries()) {
+            if (slowQuery.getContainerPath().equals(containerPath)) {
+                entries.add(slowQuery);
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,199 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.index.FilmCursor;
+import de.cyberport.core.index.FilmField;
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmQuery;
+import de.cyberport.core.serialization.FilmJsonWriter;
+import de.cyberport.core.services.CachedResult;
+import de.cyberport.core.services.FilmResultCache;
+import org.apache.commons.lang.StringUtils;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.resource.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Evaluation, serialization and caching of compiled film queries, shared by the film servlets.
+ *
+ * @author ritendra_singh
+ *
+ */
+final class FilmQueryResults {
+
+    private FilmQueryResults() {
+    }
+
+    /**
+     * Key of the query result in the given format in the {@link FilmResultCache}
+     * @param container
+     * @param query
+     * @param format
+     * @return
+     */
+    static String getCacheKey(final Resource container, final FilmQuery query, final FilmResultFormat format) {
+        return container.getPath() + (format != FilmResultFormat.JSON ? '.' + format.getExtension() : "") + '?'
+                + query.getCanonicalString();
+    }
+
+    /**
+     * Retrieve the cached result of the query for the current index. After a references update the
+     * cached rows are still valid and only have to be serialized again, if the references are part of it.
+     * @param cache
+     * @param filmIndex
+     * @param cacheKey
+     * @param query
+     * @param format
+     * @return the cached result, null when it has to be computed
+     * @throws IOException
+     */
+    static CachedResult getCached(final FilmResultCache cache, final FilmIndex filmIndex, final String cacheKey,
+                                  final FilmQuery query, final FilmResultFormat format) throws IOException {
+        final CachedResult result = cache.get(cacheKey, filmIndex.getVersion());
+        if (result != null && result.getReferencesVersion() != filmIndex.getReferencesVersion()
+                && FilmField.NUMBER_OF_REFERENCES.isIn(query.getFields())) {
+            return put(cache, filmIndex, cacheKey, query, result.getRows(), format);
+        }
+        return result;
+    }
+
+    /**
+     * Serialize the result rows of the query and cache them
+     * @param cache
+     * @param filmIndex
+     * @param cacheKey
+     * @param query
+     * @param resultRows rows as returned by {@link #select(FilmIndex, FilmQuery)}
+     * @param format
+     * @return
+     * @throws IOException
+     */
+    static CachedResult put(final FilmResultCache cache, final FilmIndex filmIndex, final String cacheKey,
+                            final FilmQuery query, final int[] resultRows, final FilmResultFormat format)
+            throws IOException {
+        return cache.put(cacheKey, filmIndex.getVersion(), filmIndex.getReferencesVersion(), resultRows,
+                serialize(filmIndex, query, resultRows, format));
+    }
+
+    /**
+     * Filter the rows of the film table as per compiled query, in the presorted order, starting
+     * after the cursor, and stop as soon as the limit is reached
+     * @param filmIndex
+     * @param query
+     * @return
+     */
+    static int[] select(final FilmIndex filmIndex, final FilmQuery query) {
+        return filmIndex.select(query.getFilter(), query.getSortKey(), getSelectLimit(query), getFromPosition(filmIndex, query));
+    }
+
+    /**
+     * Number of rows of the film table tested to select the given result rows
+     * @param filmIndex
+     * @param query
+     * @param resultRows rows as returned by {@link #select(FilmIndex, FilmQuery)}
+     * @return
+     */
+    static int getExaminedRows(final FilmIndex filmIndex, final FilmQuery query, final int[] resultRows) {
+        return filmIndex.getExaminedRows(query.getFilter(), query.getSortKey(), getSelectLimit(query),
+                getFromPosition(filmIndex, query), resultRows);
+    }
+
+    /**
+     * One row more than the limit is selected to tell if there is a following page
+     * @param query
+     * @return
+     */
+    static int getSelectLimit(final FilmQuery query) {
+        return query.getLimit() == Integer.MAX_VALUE ? Integer.MAX_VALUE : query.getLimit() + 1;
+    }
+
+    /**
+     * Position in the order of the sort key to start at, right after the cursor
+     * @param filmIndex
+     * @param query
+     * @return
+     */
+    static int getFromPosition(final FilmIndex filmIndex, final FilmQuery query) {
+        return query.getCursor() != null ? filmIndex.resume(query.getCursor()) : 0;
+    }
+
+    /**
+     * Stream the page of the result rows in the given format into a byte array, with the cursor of the
+     * following page when there are more rows than the limit
+     * @param filmIndex
+     * @param query
+     * @param resultRows
+     * @param format
+     * @return
+     * @throws IOException
+     */
+    static byte[] serialize(final FilmIndex filmIndex, final FilmQuery query, final int[] resultRows,
+                            final FilmResultFormat format) throws IOException {
+        int[] page = resultRows;
+        String next = null;
+        if (resultRows.length > query.getLimit()) {
+            page = Arrays.copyOf(resultRows, query.getLimit());
+            if (page.length > 0) {
+                next = FilmCursor.after(query.getSortKey(), filmIndex.getTable(), page[page.length - 1]).encode();
+            }
+        }
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        format.write(filmIndex.getTable(), page, query.getFields(), next, body);
+        return body.toByteArray();
+    }
+
+    /**
+     * Send the given status with a JSON error message
+     * @param response
+     * @param status
+     * @param message
+     * @throws IOException
+     */
+    static void sendError(final SlingHttpServletResponse response, final int status, final String message)
+            throws IOException {
+        response.setStatus(status);
+        response.setContentType(RESPONSE_CONTENT_TYPE);
+        new FilmJsonWriter(response.getWriter()).writeError(message);
+    }
+
+    /**
+     * Check if the If-None-Match header contains the entity tag of the current result
+     * @param ifNoneMatch
+     * @param etag
+     * @return
+     */
+    static boolean matchesEtag(final String ifNoneMatch, final String etag) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            final String tag = StringUtils.removeStart(candidate.trim(), "W/");
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the parameter of a header value is a quality of zero, i.e. a refusal
+     * @param parameter
+     * @return
+     */
+    static boolean isZeroQuality(final String parameter) {
+        final String[] nameValue = parameter.split("=");
+        if (nameValue.length != 2 || !"q".equalsIgnoreCase(nameValue[0].trim())) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(nameValue[1].trim()) <= 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.index.FilmTable;
+import de.cyberport.core.serialization.FilmBinaryWriter;
+import de.cyberport.core.serialization.FilmJsonWriter;
+import org.apache.commons.lang.StringUtils;
+import org.apache.sling.api.SlingHttpServletRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Representations of a film query result, negotiated by the extension of the request or its Accept header.
+ *
+ * @author ritendra_singh
+ *
+ */
+enum FilmResultFormat {
+
+    JSON(EXTENSION_JSON, RESPONSE_CONTENT_TYPE) {
+        @Override
+        void write(final FilmTable table, final int[] rows, final int fields, final String next,
+                   final ByteArrayOutputStream body) throws IOException {
+            new FilmJsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8)).writeResult(table, rows, fields,
+                    next);
+        }
+    },
+
+    BINARY(EXTENSION_BINARY, BINARY_CONTENT_TYPE) {
+        @Override
+        void write(final FilmTable table, final int[] rows, final int fields, final String next,
+                   final ByteArrayOutputStream body) throws IOException {
+            new FilmBinaryWriter(body).writeResult(table, rows, fields, next);
+        }
+    };
+
+    private final String extension;
+    private final String contentType;
+
+    FilmResultFormat(final String extension, final String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    String getExtension() {
+        return extension;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Write the given fields of the rows, with the cursor of the following page unless it is null
+     * @param table
+     * @param rows
+     * @param fields
+     * @param next
+     * @param body
+     * @throws IOException
+     */
+    abstract void write(FilmTable table, int[] rows, int fields, String next, ByteArrayOutputStream body)
+            throws IOException;
+
+    /**
+     * Binary for the bin extension or when the Accept header accepts the binary media type, JSON otherwise
+     * @param request
+     * @return
+     */
+    static FilmResultFormat of(final SlingHttpServletRequest request) {
+        if (EXTENSION_BINARY.equals(request.getRequestPathInfo().getExtension())
+                || acceptsBinary(request.getHeader(HEADER_ACCEPT))) {
+            return BINARY;
+        }
+        return JSON;
+    }
+
+    private static boolean acceptsBinary(final String accept) {
+        if (StringUtils.isBlank(accept)) {
+            return false;
+        }
+        for (String candidate : accept.split(",")) {
+            final String[] parts = candidate.split(";");
+            if (BINARY_CONTENT_TYPE.equalsIgnoreCase(parts[0].trim())) {
+                for (int i = 1; i < parts.length; i++) {
+                    if (FilmQueryResults.isZeroQuality(parts[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
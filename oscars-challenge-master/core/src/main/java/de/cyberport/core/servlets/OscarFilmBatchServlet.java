@@ -0,0 +1,207 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.index.FilmFilter;
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmQuery;
+import de.cyberport.core.index.SortKey;
+import de.cyberport.core.services.CachedResult;
+import de.cyberport.core.services.FilmIndexService;
+import de.cyberport.core.services.FilmResultCache;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.HttpConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletResourceTypes;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Servlet that answers several film queries against the same container with one request.
+ * It is mounted with the batch selector for the film container resource type, e.g.
+ * container.batch.json?q1=year%3D2019&amp;q2=isBestPicture%3Dtrue
+ *
+ * Every q&lt;n&gt; parameter holds the URL encoded parameters of one query, with the same parameters
+ * and semantics as {@link OscarFilmContainerServlet}. All queries are evaluated against one snapshot of
+ * the container index. Cached results are reused, queries answered from the indexes are looked up
+ * one by one, and all queries that have to scan the same sort order share one walk of it.
+ *
+ * The response is a JSON object with the response of every query under its parameter name:
+ * {
+ *   "q1": { "result": [ ... ] },
+ *   "q2": { "result": [ ... ], "next": "..." }
+ * }
+ *
+ * An invalid query, see {@link de.cyberport.core.index.InvalidQueryException}, more than 20 queries or two
+ * parameters with the same query number, e.g. q1 and q01, are answered with status 400 and {"error": "..."}.
+ *
+ * @author ritendra_singh
+ *
+ */
+@Component(service = { Servlet.class }, immediate = true)
+@SlingServletResourceTypes(
+        resourceTypes="test/filmEntryContainer",
+        methods=HttpConstants.METHOD_GET,
+        selectors="batch",
+        extensions="json")
+@ServiceDescription("Oscar Film Batch Servlet")
+public class OscarFilmBatchServlet extends SlingSafeMethodsServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Pattern QUERY_PARAMETER = Pattern.compile("q(\\d{1,4})");
+
+    private static final int MAX_QUERIES = 20;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Reference
+    private FilmIndexService filmIndexService;
+
+    @Reference
+    private FilmResultCache filmResultCache;
+
+    @Override
+    public void doGet(final SlingHttpServletRequest request, final SlingHttpServletResponse response) throws IOException {
+
+        // Compile all the queries in the order of their number, before any data is touched
+        final Map<Integer, String> names = new TreeMap<>();
+        for (String name : request.getRequestParameterMap().keySet()) {
+            final Matcher matcher = QUERY_PARAMETER.matcher(name);
+            if (matcher.matches()) {
+                final String previous = names.put(Integer.parseInt(matcher.group(1)), name);
+                if (previous != null) {
+                    FilmQueryResults.sendError(response, HttpServletResponse.SC_BAD_REQUEST,
+                            "Parameters " + previous + " and " + name + " have the same query number");
+                    return;
+                }
+            }
+        }
+        if (names.size() > MAX_QUERIES) {
+            FilmQueryResults.sendError(response, HttpServletResponse.SC_BAD_REQUEST,
+                    "At most " + MAX_QUERIES + " queries are supported per batch");
+            return;
+        }
+
+        final List<String> queryNames = new ArrayList<>(names.values());
+        final FilmQuery[] queries = new FilmQuery[queryNames.size()];
+        for (int i = 0; i < queries.length; i++) {
+            try {
+                queries[i] = FilmQuery.compile(parseParameters(request.getParameter(queryNames.get(i)))::get);
+            } catch (IllegalArgumentException e) {
+                // invalid values of the query as well as malformed URL encoding
+                logger.debug("Rejected film query {}: {}", queryNames.get(i), e.getMessage());
+                FilmQueryResults.sendError(response, HttpServletResponse.SC_BAD_REQUEST,
+                        queryNames.get(i) + ": " + e.getMessage());
+                return;
+            }
+        }
+
+        // One snapshot of the index for all the queries
+        final FilmIndex filmIndex = filmIndexService.getIndex(request.getResource());
+
+        final CachedResult[] results = new CachedResult[queries.length];
+        final String[] cacheKeys = new String[queries.length];
+        final Map<SortKey, List<Integer>> pending = new EnumMap<>(SortKey.class);
+        for (int i = 0; i < queries.length; i++) {
+            cacheKeys[i] = FilmQueryResults.getCacheKey(request.getResource(), queries[i],
+                    FilmResultFormat.JSON);
+            results[i] = FilmQueryResults.getCached(filmResultCache, filmIndex, cacheKeys[i], queries[i],
+                    FilmResultFormat.JSON);
+            if (results[i] == null) {
+                pending.computeIfAbsent(queries[i].getSortKey(), sortKey -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Map.Entry<SortKey, List<Integer>> entry : pending.entrySet()) {
+            select(filmIndex, entry.getKey(), entry.getValue(), queries, cacheKeys, results);
+        }
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write('{');
+        for (int i = 0; i < results.length; i++) {
+            if (i > 0) {
+                body.write(',');
+            }
+            body.write(('"' + queryNames.get(i) + "\":").getBytes(StandardCharsets.UTF_8));
+            body.write(results[i].getBody());
+        }
+        body.write('}');
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(RESPONSE_CONTENT_TYPE);
+        response.setHeader(HEADER_CACHE_CONTROL, filmResultCache.getCacheControl());
+        response.setContentLength(body.size());
+        body.writeTo(response.getOutputStream());
+    }
+
+    /**
+     * Evaluate the queries of one sort key together and cache their results
+     */
+    private void select(final FilmIndex filmIndex, final SortKey sortKey, final List<Integer> indexes,
+                        final FilmQuery[] queries, final String[] cacheKeys, final CachedResult[] results)
+            throws IOException {
+        final FilmFilter[] filters = new FilmFilter[indexes.size()];
+        final int[] limits = new int[indexes.size()];
+        final int[] fromPositions = new int[indexes.size()];
+        for (int i = 0; i < filters.length; i++) {
+            final FilmQuery query = queries[indexes.get(i)];
+            filters[i] = query.getFilter();
+            limits[i] = FilmQueryResults.getSelectLimit(query);
+            fromPositions[i] = FilmQueryResults.getFromPosition(filmIndex, query);
+        }
+
+        final int[][] rows = filmIndex.select(filters, sortKey, limits, fromPositions);
+        for (int i = 0; i < filters.length; i++) {
+            final int query = indexes.get(i);
+            results[query] = FilmQueryResults.put(filmResultCache, filmIndex, cacheKeys[query], queries[query], rows[i],
+                    FilmResultFormat.JSON);
+        }
+    }
+
+    /**
+     * Split the parameters of one query, the first value of a parameter wins
+     * @param queryString
+     * @return
+     */
+    private static Map<String, String> parseParameters(final String queryString) {
+        final Map<String, String> parameters = new HashMap<>();
+        for (String pair : queryString.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            final int separator = pair.indexOf('=');
+            final String name = decode(separator >= 0 ? pair.substring(0, separator) : pair);
+            final String value = separator >= 0 ? decode(pair.substring(separator + 1)) : "";
+            parameters.putIfAbsent(name, value);
+        }
+        return parameters;
+    }
+
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
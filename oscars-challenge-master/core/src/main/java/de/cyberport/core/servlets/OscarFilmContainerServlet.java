@@ -1,16 +1,24 @@
 package de.cyberport.core.servlets;
 
-import de.cyberport.core.models.Film;
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmQuery;
+import de.cyberport.core.index.InvalidQueryException;
+import de.cyberport.core.metrics.QueryMetrics;
+import de.cyberport.core.metrics.QueryTrace;
+import de.cyberport.core.metrics.SlowQuery;
+import de.cyberport.core.services.CachedResult;
+import de.cyberport.core.services.FilmIndexService;
+import de.cyberport.core.services.FilmQueryMetrics;
+import de.cyberport.core.services.FilmResultCache;
+import de.cyberport.core.services.FilmSlowQueryLog;
 import org.apache.commons.lang.StringUtils;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
-import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.servlets.HttpConstants;
 import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
 import org.apache.sling.servlets.annotations.SlingServletResourceTypes;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.propertytypes.ServiceDescription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,12 +26,6 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.Servlet;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static de.cyberport.core.constants.OscarConstants.*;
 
@@ -47,11 +49,28 @@ import static de.cyberport.core.constants.OscarConstants.*;
  * 8. isBestPicture - Boolean. True to return only the winners of the best picture nomination.
  * 9. sortBy - Enumeration. Sorting in ascending order, supported values are: 'title', 'year', 'awards', 'nominations'. Default value should be 'title'.
  * 10. limit - Integer. Maximum amount of result entries in the response.
+ * 11. cursor - String. Opaque "next" value of the previous page, to continue after its last entry.
+ *     A response contains "next" when a limit is given and more entries follow.
+ * 12. fields - String. Comma separated properties to include in the result entries, all of them by default.
+ * 13. titlePrefix - String. Films whose title starts with the value, ignoring case
+ * 14. titleContains - String. Films whose title contains the value, ignoring case
+ * 15. titleFuzzy - String. Films whose title is at most titleDistance inserted, deleted or replaced characters
+ *     away from the value, ignoring case
+ * 16. titleDistance - Integer. Maximum edit distance of titleFuzzy from 0 to 3, 2 by default
  *
  * Please note:
  * More then 1 filter must be supported.
  * The resulting JSON must not contain "jcr:primaryType" and "sling:resourceType" properties
  * When there will be no results based on the provided filter an empty array should be returned. Please refer to the 3rd example.
+ * Invalid numbers, a negative limit, an invalid cursor, an unsupported titleDistance or unknown fields are answered
+ * with status 400 and {"error": "..."}.
+ *
+ * With the bin extension, or an Accept header accepting application/vnd.cyberport.films, the same result is
+ * answered in the compact binary format of {@link de.cyberport.core.serialization.FilmBinaryWriter}, which
+ * Java clients decode with {@link de.cyberport.core.serialization.FilmBinaryReader}. Errors are always JSON.
+ *
+ * Queries slower than the threshold of the {@link FilmSlowQueryLog} are logged with their timings and can be
+ * read with the slowqueries selector of the container, see {@link OscarFilmSlowQueriesServlet}.
  *
  * Examples based on the data stored in oscars.json in resources directory.
  *
@@ -124,7 +143,7 @@ import static de.cyberport.core.constants.OscarConstants.*;
 @SlingServletResourceTypes(
         resourceTypes="test/filmEntryContainer",
         methods=HttpConstants.METHOD_GET,
-        extensions="json")
+        extensions={ EXTENSION_JSON, EXTENSION_BINARY })
 @ServiceDescription("Oscar Film Container Servlet")
 public class OscarFilmContainerServlet extends SlingSafeMethodsServlet {
 
@@ -132,137 +151,117 @@ public class OscarFilmContainerServlet extends SlingSafeMethodsServlet {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private List<Film> oscarFilmList = new ArrayList<>();
-    private JSONObject resultObj = new JSONObject();
-
-    @Override
-    public void doGet(final SlingHttpServletRequest request, final SlingHttpServletResponse response) throws IOException {
-        try {
-
-            // Retrieve List from the provided JSON resource
-            retrieveFilmsFromResource(request);
-
-            String limit = request.getParameter(LIMIT);
-
-            List<Film> resultFilms;
+    @Reference
+    private FilmIndexService filmIndexService;
 
-            // Create Stream to filter the JSON as per parameter list
-            Stream<Film> filmStream = oscarFilmList.stream()
-                    .filter(addParamFilters(request).stream().reduce(x->true, Predicate::and))
-                    .sorted(getSortComparator(request));
+    @Reference
+    private FilmResultCache filmResultCache;
 
-            // Apply Limit and Collect the data
-            if(StringUtils.isNotBlank(limit)) {
-                resultFilms = filmStream
-                        .limit(Integer.parseInt(limit))
-                        .collect(Collectors.toList());
-            } else {
-                resultFilms = filmStream.collect(Collectors.toList());
-            }
-
-            logger.info("Size of filtered list: " + resultFilms.size());
+    @Reference
+    private FilmQueryMetrics filmQueryMetrics;
 
-            // Add the response array to required JSON object
-            resultObj.put("result", resultFilms.toArray());
-            response.setStatus(HttpServletResponse.SC_OK);
+    @Reference
+    private FilmSlowQueryLog filmSlowQueryLog;
 
-        } catch (JSONException e) {
-            logger.error("Exception caught while calling web service >>", e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    @Override
+    public void doGet(final SlingHttpServletRequest request, final SlingHttpServletResponse response) throws IOException {
+        final QueryMetrics metrics = filmQueryMetrics.getMetrics();
+        final QueryTrace trace = metrics.startTrace();
+        try {
+            doGet(request, response, trace);
+        } finally {
+            metrics.record(trace);
         }
-
-        // Write response to PrintWriter
-        response.setContentType(RESPONSE_CONTENT_TYPE);
-        response.getWriter().print(resultObj.toString());
     }
 
-    /**
-     * Retrieve Films List from Resource
-     * @param request
-     */
-    private void retrieveFilmsFromResource(SlingHttpServletRequest request) {
-        final Resource resource = request.getResource();
+    private void doGet(final SlingHttpServletRequest request, final SlingHttpServletResponse response,
+                       final QueryTrace trace) throws IOException {
 
-        for (Resource child : resource.getChildren()) {
-            Film film = child.adaptTo(Film.class);
-            oscarFilmList.add(film);
+        // Compile the request parameters, invalid values are rejected before any data is touched
+        final FilmQuery query;
+        try {
+            query = FilmQuery.compile(request::getParameter);
+        } catch (InvalidQueryException e) {
+            logger.debug("Rejected film query: {}", e.getMessage());
+            FilmQueryResults.sendError(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            trace.endPhase(QueryTrace.Phase.COMPILE);
+            return;
         }
-
-        logger.info("Size of list from the resource: " + oscarFilmList.size());
-    }
-
-    /**
-     * Add Parameters predicate based on the request
-     * @param request
-     * @return
-     */
-    private List<Predicate<Film>> addParamFilters(final SlingHttpServletRequest request) {
-        List<Predicate<Film>> paramPredicates = new ArrayList<>();
-
-        if(!request.getRequestParameterList().isEmpty()) {
-            String title = request.getParameter(TITLE);
-            if (title != null && !title.isEmpty()) {
-                paramPredicates.add(film -> film.getTitle().equalsIgnoreCase(title));
-            }
-
-            String year = request.getParameter(YEAR);
-            if (year != null && !year.isEmpty()) {
-                paramPredicates.add(film -> Integer.parseInt(film.getYear()) == Integer.parseInt(year));
-            }
-
-            String minYear = request.getParameter(MIN_YEAR);
-            if (minYear != null && !minYear.isEmpty()) {
-                paramPredicates.add(film -> Integer.parseInt(film.getYear()) >= Integer.parseInt(minYear));
-            }
-
-            String maxYear = request.getParameter(MAX_YEAR);
-            if (maxYear != null && !maxYear.isEmpty()) {
-                paramPredicates.add(film -> Integer.parseInt(film.getYear()) <= Integer.parseInt(maxYear));
-            }
-
-            String minAwards = request.getParameter(MIN_AWARDS);
-            if (minAwards != null && !minAwards.isEmpty()) {
-                paramPredicates.add(film -> Integer.parseInt(film.getAwards()) >= Integer.parseInt(minAwards));
-            }
-
-            String maxAwards = request.getParameter(MAX_AWARDS);
-            if (maxAwards != null && !maxAwards.isEmpty()) {
-                paramPredicates.add(film -> Integer.parseInt(film.getAwards()) <= Integer.parseInt(maxAwards));
-            }
-
-            String nominations = request.getParameter(NOMINATIONS);
-            if (nominations != null && !nominations.isEmpty()) {
-                paramPredicates.add(film -> Integer.parseInt(film.getNominations()) == Integer.parseInt(nominations));
-            }
-
-            String isBestPicture = request.getParameter(IS_BEST_PICTURE);
-            if (isBestPicture != null && !isBestPicture.isEmpty()) {
-                paramPredicates.add(film -> Boolean.parseBoolean(film.getIsBestPicture()) == Boolean.parseBoolean(isBestPicture));
+        trace.setShape(query.getShape());
+        trace.endPhase(QueryTrace.Phase.COMPILE);
+
+        // Retrieve the films of the requested container from its index
+        final FilmIndex filmIndex = filmIndexService.getIndex(request.getResource());
+        trace.endPhase(QueryTrace.Phase.INDEX);
+
+        // Serve the result from the cache, compute and cache it on a miss
+        final FilmResultFormat format = FilmResultFormat.of(request);
+        final String cacheKey = FilmQueryResults.getCacheKey(request.getResource(), query, format);
+        CachedResult result = FilmQueryResults.getCached(filmResultCache, filmIndex, cacheKey, query, format);
+        trace.setCacheHit(result != null);
+        trace.endPhase(QueryTrace.Phase.CACHE);
+        int[] resultRows = null;
+        if (result == null) {
+            resultRows = FilmQueryResults.select(filmIndex, query);
+            logger.debug("Size of filtered list: {}", resultRows.length);
+            trace.endPhase(QueryTrace.Phase.SELECT);
+            result = FilmQueryResults.put(filmResultCache, filmIndex, cacheKey, query, resultRows, format);
+            trace.endPhase(QueryTrace.Phase.SERIALIZE);
+        }
+        trace.setResultSize(Math.min(result.getRows().length, query.getLimit()));
+
+        // Send the gzip encoded body kept with the cached result to clients accepting it
+        final boolean gzip = result.isCompressible() && acceptsGzip(request.getHeader(HEADER_ACCEPT_ENCODING));
+        final String etag = gzip ? result.getGzipEtag() : result.getEtag();
+
+        response.setHeader(HEADER_ETAG, etag);
+        response.setHeader(HEADER_CACHE_CONTROL, filmResultCache.getCacheControl());
+        response.setHeader(HEADER_VARY, HEADER_ACCEPT + ", " + HEADER_ACCEPT_ENCODING);
+        if (FilmQueryResults.matchesEtag(request.getHeader(HEADER_IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        } else {
+            final byte[] body = gzip ? result.getGzipBody() : result.getBody();
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(format.getContentType());
+            if (gzip) {
+                response.setHeader(HEADER_CONTENT_ENCODING, ENCODING_GZIP);
             }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+        trace.endPhase(QueryTrace.Phase.WRITE);
+
+        // Only the queries that turned out to be slow pay for counting the rows they examined
+        if (filmSlowQueryLog.isLogged(trace.getTotalDuration())) {
+            final int examinedRows = resultRows != null
+                    ? FilmQueryResults.getExaminedRows(filmIndex, query, resultRows) : 0;
+            filmSlowQueryLog.add(new SlowQuery(System.currentTimeMillis(), filmIndex.getContainerPath(),
+                    query.getCanonicalString(), examinedRows, trace));
         }
-
-        return paramPredicates;
     }
 
     /**
-     * Prepare Sort comparator based on parameters passed
-     * @param request
+     * Check if the Accept-Encoding header accepts gzip with a quality above zero. An explicit gzip
+     * entry takes precedence over the wildcard.
+     * @param acceptEncoding
      * @return
      */
-    private Comparator<Film> getSortComparator (final SlingHttpServletRequest request) {
-        if(!request.getRequestParameterList().isEmpty()) {
-            String sortBy = request.getParameter(SORT_BY);
-            if (sortBy != null && !sortBy.isEmpty()) {
-                if (sortBy.equalsIgnoreCase(YEAR)) {
-                    return Comparator.comparing(Film::getYear);
-                } else if (sortBy.equalsIgnoreCase(AWARDS)) {
-                    return Comparator.comparing(Film::getAwards);
-                } else if (sortBy.equalsIgnoreCase(NOMINATIONS)) {
-                    return Comparator.comparing(Film::getNominations);
-                }
+    private static boolean acceptsGzip(final String acceptEncoding) {
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String candidate : acceptEncoding.split(",")) {
+            final String[] parts = candidate.split(";");
+            final String coding = parts[0].trim();
+            final boolean accepted = parts.length < 2 || !FilmQueryResults.isZeroQuality(parts[1]);
+            if (ENCODING_GZIP.equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+                return accepted;
+            }
+            if ("*".equals(coding)) {
+                wildcard = accepted;
             }
         }
-
-        return Comparator.comparing(Film::getTitle);
+        return Boolean.TRUE.equals(wildcard);
     }
-}
\ No newline at end of file
+}
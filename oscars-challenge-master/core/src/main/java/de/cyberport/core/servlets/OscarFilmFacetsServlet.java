@@ -0,0 +1,114 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.index.FilmFacets;
+import de.cyberport.core.index.FilmFilter;
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmQuery;
+import de.cyberport.core.index.InvalidQueryException;
+import de.cyberport.core.serialization.FilmJsonWriter;
+import de.cyberport.core.services.CachedResult;
+import de.cyberport.core.services.FilmIndexService;
+import de.cyberport.core.services.FilmResultCache;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.HttpConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletResourceTypes;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Servlet that writes the facets of the Oscar films matching the request filters in json format,
+ * without any of the films themselves. It is mounted with the facets selector for the film
+ * container resource type, e.g. container.facets.json?minYear=2018&amp;minAwards=3
+ *
+ * The filter parameters are the ones of {@link OscarFilmContainerServlet}, sortBy, limit, cursor and
+ * fields are ignored, neither validated nor part of the cache key of the facets.
+ *
+ * Sample response:
+ * {
+ *   "count": 6,
+ *   "year": { "2018": 4, "2019": 2 },
+ *   "awards": { "3": 4, "4": 2 },
+ *   "nominations": { "5": 2, "6": 1, "7": 1, "10": 2 },
+ *   "isBestPicture": { "true": 2, "false": 4 },
+ *   "numberOfReferences": { "min": 463, "max": 8279, "sum": 17274 }
+ * }
+ *
+ * @author ritendra_singh
+ *
+ */
+@Component(service = { Servlet.class }, immediate = true)
+@SlingServletResourceTypes(
+        resourceTypes="test/filmEntryContainer",
+        methods=HttpConstants.METHOD_GET,
+        selectors="facets",
+        extensions="json")
+@ServiceDescription("Oscar Film Facets Servlet")
+public class OscarFilmFacetsServlet extends SlingSafeMethodsServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Reference
+    private FilmIndexService filmIndexService;
+
+    @Reference
+    private FilmResultCache filmResultCache;
+
+    @Override
+    public void doGet(final SlingHttpServletRequest request, final SlingHttpServletResponse response) throws IOException {
+
+        final FilmFilter filter;
+        try {
+            filter = FilmQuery.compileFilter(request::getParameter);
+        } catch (InvalidQueryException e) {
+            logger.debug("Rejected film facets query: {}", e.getMessage());
+            FilmQueryResults.sendError(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        final FilmIndex filmIndex = filmIndexService.getIndex(request.getResource());
+
+        // The facets include the references, so a cached body is only valid for its references version
+        final String cacheKey = request.getResource().getPath() + "?facets&" + filter.toCanonicalString();
+        CachedResult result = filmResultCache.get(cacheKey, filmIndex.getVersion());
+        if (result == null || result.getReferencesVersion() != filmIndex.getReferencesVersion()) {
+            result = filmResultCache.put(cacheKey, filmIndex.getVersion(), filmIndex.getReferencesVersion(), NO_ROWS,
+                    serialize(filmIndex.facets(filter)));
+        }
+
+        response.setHeader(HEADER_ETAG, result.getEtag());
+        response.setHeader(HEADER_CACHE_CONTROL, filmResultCache.getCacheControl());
+        if (FilmQueryResults.matchesEtag(request.getHeader(HEADER_IF_NONE_MATCH), result.getEtag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(RESPONSE_CONTENT_TYPE);
+        response.setContentLength(result.getBody().length);
+        response.getOutputStream().write(result.getBody());
+    }
+
+    private static byte[] serialize(final FilmFacets facets) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+        new FilmJsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8)).writeFacets(facets);
+        return body.toByteArray();
+    }
+}
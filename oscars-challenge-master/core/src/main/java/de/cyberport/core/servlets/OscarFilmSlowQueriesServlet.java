@@ -0,0 +1,77 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.serialization.FilmJsonWriter;
+import de.cyberport.core.services.FilmSlowQueryLog;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.HttpConstants;
+import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
+import org.apache.sling.servlets.annotations.SlingServletResourceTypes;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.propertytypes.ServiceDescription;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Servlet that writes the slow queries logged for the film container in json format, newest first.
+ * It is mounted with the slowqueries selector for the film container resource type, e.g.
+ * container.slowqueries.json
+ *
+ * The listing reveals the queries of all users, it is answered with status 404 unless it is enabled
+ * in the configuration of the {@link FilmSlowQueryLog}.
+ *
+ * The query is the normalized form of the request parameters, examinedRows the number of films that
+ * were tested against the filters, 0 when the result was cached, and the durations are milliseconds.
+ *
+ * Sample response:
+ * {
+ *   "slowQueries": [
+ *     {
+ *       "timestamp": "2020-06-01T10:15:30.123Z",
+ *       "containerPath": "/content/oscars",
+ *       "query": "minYear=1950&amp;sortBy=nominations&amp;limit=10",
+ *       "shape": "year;sortBy=nominations",
+ *       "examinedRows": 964,
+ *       "returnedRows": 10,
+ *       "cacheHit": false,
+ *       "durationMillis": 152.406,
+ *       "phases": { "compile": 0.031, "index": 148.220, "cache": 0.004, "select": 2.870, "serialize": 1.105, "write": 0.176 }
+ *     }
+ *   ]
+ * }
+ *
+ * @author ritendra_singh
+ *
+ */
+@Component(service = { Servlet.class }, immediate = true)
+@SlingServletResourceTypes(
+        resourceTypes="test/filmEntryContainer",
+        methods=HttpConstants.METHOD_GET,
+        selectors="slowqueries",
+        extensions="json")
+@ServiceDescription("Oscar Film Slow Queries Servlet")
+public class OscarFilmSlowQueriesServlet extends SlingSafeMethodsServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @Reference
+    private FilmSlowQueryLog filmSlowQueryLog;
+
+    @Override
+    public void doGet(final SlingHttpServletRequest request, final SlingHttpServletResponse response) throws IOException {
+        if (!filmSlowQueryLog.isListingEnabled()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(RESPONSE_CONTENT_TYPE);
+        response.setHeader(HEADER_CACHE_CONTROL, "no-store");
+        new FilmJsonWriter(response.getWriter()).writeSlowQueries(
+                filmSlowQueryLog.getEntries(request.getResource().getPath()));
+    }
+}
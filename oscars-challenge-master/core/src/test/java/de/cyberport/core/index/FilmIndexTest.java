@@ -0,0 +1,325 @@
+package de.cyberport.core.index;
+
+import de.cyberport.core.models.Film;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.apache.sling.api.resource.Resource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class FilmIndexTest {
+
+    private final AemContext context = new AemContext();
+
+    private FilmIndex underTest;
+
+    private List<Film> films;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json("/oscars.json", "/content/oscars");
+        Resource container = context.resourceResolver().getResource("/content/oscars");
+        underTest = FilmIndex.build(container);
+        films = new ArrayList<>();
+        for (Resource child : container.getChildren()) {
+            films.add(child.adaptTo(Film.class));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SortKey.class)
+    @DisplayName("Verify the limited selection matches the fully sorted and then limited films")
+    void verifyLimitedSelectMatchesFullSort(final SortKey sortKey) {
+        FilmTable table = underTest.getTable();
+        for (int minAwards : new int[] { 0, 2, 11 }) {
+            for (int limit : new int[] { 0, 1, 5, 100, 2000 }) {
+                List<String> expected = films.stream()
+                        .filter(minAwardsPredicate(minAwards))
+                        .sorted(fullSortComparator(sortKey))
+                        .limit(limit)
+                        .map(Film::getTitle)
+                        .collect(Collectors.toList());
+
+                int[] rows = underTest.select(FilmFilter.builder().minAwards(minAwards).build(), sortKey, limit);
+                List<String> actual = new ArrayList<>();
+                for (int row : rows) {
+                    actual.add(table.getTitle(row));
+                }
+                assertEquals(expected, actual, "minAwards=" + minAwards + "&limit=" + limit);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SortKey.class)
+    @DisplayName("Verify the bitmap selection matches a scan over the sort order")
+    void verifyBitmapSelectMatchesScan(final SortKey sortKey) {
+        FilmFilter[] filters = {
+                FilmFilter.builder().year(2019).minAwards(4).bestPicture(true).build(),
+                FilmFilter.builder().minYear(1950).maxYear(1960).nominations(5).build(),
+                FilmFilter.builder().maxYear(2018).build(),
+                FilmFilter.builder().maxAwards(1).bestPicture(false).build(),
+                FilmFilter.builder().minYear(2000).title("Traffic").build(),
+                FilmFilter.builder().year(1800).build()
+        };
+        for (FilmFilter filter : filters) {
+            for (int limit : new int[] { 1, 4, Integer.MAX_VALUE }) {
+                assertArrayEquals(scan(filter, sortKey, limit), underTest.select(filter, sortKey, limit));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SortKey.class)
+    @DisplayName("Verify the filters of a batch get the same rows as selected one by one")
+    void verifyBatchSelectMatchesSingleSelects(final SortKey sortKey) {
+        FilmFilter[] filters = {
+                FilmFilter.builder().bestPicture(false).build(),
+                FilmFilter.builder().maxYear(2018).build(),
+                FilmFilter.builder().year(2019).minAwards(4).build(),
+                FilmFilter.ALL,
+                FilmFilter.builder().minYear(1950).build(),
+                FilmFilter.builder().title("Traffic").build()
+        };
+        int[] limits = { 5, Integer.MAX_VALUE, 3, 0, 40, 2 };
+        int[] fromPositions = { 0, 10, 0, 0, 100, 0 };
+
+        int[][] rows = underTest.select(filters, sortKey, limits, fromPositions);
+        for (int i = 0; i < filters.length; i++) {
+            assertArrayEquals(underTest.select(filters[i], sortKey, limits[i], fromPositions[i]), rows[i], "Filter " + i);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SortKey.class)
+    @DisplayName("Verify paging with cursors returns every selected row exactly once and in order")
+    void verifyCursorPagesMatchFullSelect(final SortKey sortKey) {
+        FilmFilter[] filters = {
+                FilmFilter.ALL,
+                FilmFilter.builder().minAwards(4).build(),
+                FilmFilter.builder().bestPicture(false).maxYear(1990).build(),
+                FilmFilter.builder().title("A Star Is Born").build()
+        };
+        for (FilmFilter filter : filters) {
+            List<Integer> paged = new ArrayList<>();
+            int position = 0;
+            int[] page;
+            do {
+                page = underTest.select(filter, sortKey, 20, position);
+                for (int row : page) {
+                    paged.add(row);
+                }
+                if (page.length > 0) {
+                    position = underTest.resume(FilmCursor.decode(
+                            FilmCursor.after(sortKey, underTest.getTable(), page[page.length - 1]).encode()));
+                }
+            } while (page.length == 20);
+
+            assertArrayEquals(underTest.select(filter, sortKey), paged.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(SortKey.class)
+    @DisplayName("Verify walks split into concurrently tested segments select the same rows as sequential ones")
+    void verifyParallelScanMatchesSequentialScan(final SortKey sortKey) {
+        ParallelScan parallelScan = new ParallelScan(4, 0, 16);
+        try {
+            FilmIndex parallel = FilmIndex.build(context.resourceResolver().getResource("/content/oscars"), parallelScan);
+            FilmFilter[] filters = {
+                    FilmFilter.ALL,
+                    FilmFilter.builder().minAwards(2).build(),
+                    FilmFilter.builder().nominations(11).build(),
+                    FilmFilter.builder().bestPicture(true).maxYear(1990).build(),
+                    FilmFilter.builder().minYear(2000).maxAwards(0).build(),
+                    FilmFilter.builder().year(1800).build()
+            };
+            for (FilmFilter filter : filters) {
+                for (int limit : new int[] { 0, 1, 7, 100, Integer.MAX_VALUE }) {
+                    for (int from : new int[] { 0, 500, 1316 }) {
+                        assertArrayEquals(underTest.select(filter, sortKey, limit, from),
+                                parallel.select(filter, sortKey, limit, from), filter + " limit " + limit + " from " + from);
+                    }
+                }
+            }
+        } finally {
+            parallelScan.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Verify a cursor of a removed film resumes after all films with its sort value")
+    void verifyCursorOfRemovedFilmResumesAfterValue() {
+        FilmTable previous = new FilmTable.Builder()
+                .add("a", "A", 2018, 1, 1, false, 0)
+                .add("b", "B", 2019, 1, 1, false, 0)
+                .add("c", "C", 2019, 1, 1, false, 0)
+                .add("d", "D", 2020, 1, 1, false, 0)
+                .build();
+        FilmCursor cursor = FilmCursor.after(SortKey.YEAR, previous, 1);
+
+        Resource container = context.create().resource("/content/paging");
+        context.create().resource("/content/paging/a", "title", "A", "year", "2018");
+        context.create().resource("/content/paging/c", "title", "C", "year", "2019");
+        context.create().resource("/content/paging/d", "title", "D", "year", "2020");
+        FilmIndex current = FilmIndex.build(container);
+
+        int[] rows = current.select(FilmFilter.ALL, SortKey.YEAR, 10, current.resume(cursor));
+        assertEquals(1, rows.length);
+        assertEquals("D", current.getTable().getTitle(rows[0]));
+    }
+
+    @ParameterizedTest
+    @EnumSource(SortKey.class)
+    @DisplayName("Verify the sort order is ascending and ties keep the order of the container")
+    void verifySortOrderIsAscendingWithStableTies(final SortKey sortKey) {
+        FilmTable table = underTest.getTable();
+        int[] order = underTest.getSortOrder(sortKey);
+        assertEquals(table.size(), order.length);
+        for (int position = 1; position < order.length; position++) {
+            int result = sortKey.compareToValue(table, order[position - 1], sortKey.getValue(table, order[position]));
+            assertTrue(result < 0 || result == 0 && order[position - 1] < order[position],
+                    "Rows " + order[position - 1] + " and " + order[position] + " are out of order");
+        }
+    }
+
+    @Test
+    @DisplayName("Verify the selected rows follow the order of the sort key")
+    void verifySelectFollowsSortOrder() {
+        FilmTable table = underTest.getTable();
+        int[] rows = underTest.select(FilmFilter.builder().minYear(2018).minAwards(3).build(), SortKey.NOMINATIONS);
+        assertEquals(6, rows.length);
+        assertEquals("Bohemian Rhapsody", table.getTitle(rows[0]));
+        assertEquals("Green Book", table.getTitle(rows[1]));
+        assertEquals("Parasite", table.getTitle(rows[2]));
+        assertEquals("Black Panther", table.getTitle(rows[3]));
+        assertEquals("Roma", table.getTitle(rows[4]));
+        assertEquals("1917", table.getTitle(rows[5]));
+    }
+
+    @Test
+    @DisplayName("Verify the filter selects the rows matching all of its bounds")
+    void verifyFilterSelectsMatchingRows() {
+        int[] rows = underTest.select(FilmFilter.builder().year(2019).minAwards(4).build(), SortKey.TITLE);
+        assertEquals(1, rows.length);
+        assertEquals("Parasite", underTest.getTable().getTitle(rows[0]));
+        assertEquals(underTest.size(), underTest.select(FilmFilter.ALL, SortKey.TITLE).length);
+    }
+
+    @Test
+    @DisplayName("Verify the title filter ignores the case of the title")
+    void verifyTitleFilterIgnoresCase() {
+        assertEquals(1, underTest.select(FilmFilter.builder().title("spider-man 2").build(), SortKey.TITLE).length);
+    }
+
+    @Test
+    @DisplayName("Verify the title lookup returns every film with that title, sorted and filtered")
+    void verifyTitleLookupReturnsAllFilmsWithTitle() {
+        FilmTable table = underTest.getTable();
+        int[] rows = underTest.select(FilmFilter.builder().title("A STAR IS BORN").build(), SortKey.YEAR);
+        assertEquals(3, rows.length);
+        assertTrue(table.getYear(rows[0]) < table.getYear(rows[1]) && table.getYear(rows[1]) < table.getYear(rows[2]));
+
+        int[] filtered = underTest.select(FilmFilter.builder().title("a star is born").minYear(2000).build(), SortKey.YEAR);
+        assertEquals(1, filtered.length);
+        assertEquals(2018, table.getYear(filtered[0]));
+    }
+
+    @ParameterizedTest
+    @EnumSource(SortKey.class)
+    @DisplayName("Verify the title search selection matches a scan over the sort order")
+    void verifyTitleSearchSelectMatchesScan(final SortKey sortKey) {
+        FilmFilter[] filters = {
+                FilmFilter.builder().titlePrefix("The").build(),
+                FilmFilter.builder().titlePrefix("the ").minYear(1990).minAwards(1).build(),
+                FilmFilter.builder().titleContains("MAN").build(),
+                FilmFilter.builder().titleContains("an").bestPicture(true).build(),
+                FilmFilter.builder().titleContains("xyz").build(),
+                FilmFilter.builder().titleFuzzy("Parasit", 1).build(),
+                FilmFilter.builder().titleFuzzy("the godfater", 2).maxYear(1980).build(),
+                FilmFilter.builder().titleFuzzy("Up", 3).build(),
+                FilmFilter.builder().titlePrefix("a").titleContains("star").titleFuzzy("a star is bom", 1).build(),
+                FilmFilter.builder().title("Traffic").titleContains("fic").build()
+        };
+        for (FilmFilter filter : filters) {
+            for (int limit : new int[] { 1, 4, Integer.MAX_VALUE }) {
+                assertArrayEquals(scan(filter, sortKey, limit), underTest.select(filter, sortKey, limit),
+                        filter.toCanonicalString() + "&limit=" + limit);
+            }
+            assertEquals(scan(filter, sortKey, Integer.MAX_VALUE).length, underTest.facets(filter).getCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Verify the title searches ignore case and find titles within the edit distance")
+    void verifyTitleSearchFindsTitles() {
+        FilmTable table = underTest.getTable();
+        int[] prefixed = underTest.select(FilmFilter.builder().titlePrefix("spider-MAN").build(), SortKey.TITLE);
+        assertTrue(prefixed.length > 0);
+        for (int row : prefixed) {
+            assertTrue(table.getTitle(row).toLowerCase().startsWith("spider-man"));
+        }
+        assertEquals(3, underTest.select(FilmFilter.builder().titleContains("STAR IS").build(), SortKey.TITLE).length);
+
+        int[] fuzzy = underTest.select(FilmFilter.builder().titleFuzzy("prasite", 1).build(), SortKey.TITLE);
+        assertEquals(1, fuzzy.length);
+        assertEquals("Parasite", table.getTitle(fuzzy[0]));
+        assertEquals(0, underTest.select(FilmFilter.builder().titleFuzzy("prasit", 1).build(), SortKey.TITLE).length);
+        assertEquals(QueryPlan.AccessPath.BITMAP,
+                underTest.plan(FilmFilter.builder().titleFuzzy("prasite", 1).build()).getAccessPath());
+        assertEquals(QueryPlan.AccessPath.EMPTY,
+                underTest.plan(FilmFilter.builder().titleContains("qqq").build()).getAccessPath());
+    }
+
+    @Test
+    @DisplayName("Verify unsupported sortBy values fall back to title")
+    void verifyUnsupportedSortByFallsBackToTitle() {
+        assertEquals(SortKey.AWARDS, SortKey.fromParameter("Awards"));
+        assertEquals(SortKey.TITLE, SortKey.fromParameter("numberOfReferences"));
+        assertEquals(SortKey.TITLE, SortKey.fromParameter(null));
+    }
+
+    private static Predicate<Film> minAwardsPredicate(final int minAwards) {
+        return film -> Integer.parseInt(film.getAwards()) >= minAwards;
+    }
+
+    private static Comparator<Film> fullSortComparator(final SortKey sortKey) {
+        switch (sortKey) {
+            case YEAR:
+                return Comparator.comparingInt(film -> Integer.parseInt(film.getYear()));
+            case AWARDS:
+                return Comparator.comparingInt(film -> Integer.parseInt(film.getAwards()));
+            case NOMINATIONS:
+                return Comparator.comparingInt(film -> Integer.parseInt(film.getNominations()));
+            default:
+                return Comparator.comparing(Film::getTitle);
+        }
+    }
+
+    private int[] scan(final FilmFilter filter, final SortKey sortKey, final int limit) {
+        return Arrays.stream(underTest.getSortOrder(sortKey))
+                .filter(row -> filter.matches(underTest.getTable(), row))
+                .limit(limit)
+                .toArray();
+    }
+}
@@ -0,0 +1,161 @@
+package de.cyberport.core.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+class FilmQueryTest {
+
+    @Test
+    @DisplayName("Verify the parameters are parsed into filter, sort key and limit")
+    void verifyParametersAreParsed() {
+        Map<String, String> params = new HashMap<>();
+        params.put("title", "Parasite");
+        params.put("minYear", "2018");
+        params.put("isBestPicture", "true");
+        params.put("sortBy", "Awards");
+        params.put("limit", "5");
+
+        FilmQuery query = FilmQuery.parse(params::get);
+
+        assertEquals("parasite", query.getFilter().getTitle());
+        assertEquals(2018, query.getFilter().getMinYear());
+        assertEquals(SortKey.AWARDS, query.getSortKey());
+        assertEquals(5, query.getLimit());
+        assertEquals("title=parasite&minYear=2018&isBestPicture=true&sortBy=awards&limit=5", query.getCanonicalString());
+    }
+
+    @Test
+    @DisplayName("Verify the title search parameters are parsed with the default and bounded distance")
+    void verifyTitleSearchParametersAreParsed() {
+        Map<String, String> params = new HashMap<>();
+        params.put("titlePrefix", "The");
+        params.put("titleContains", "Man");
+        params.put("titleFuzzy", "Godfater");
+
+        FilmQuery query = FilmQuery.parse(params::get);
+
+        assertEquals("titlePrefix=the&titleContains=man&titleFuzzy=godfater&titleDistance=2&sortBy=title",
+                query.getCanonicalString());
+        assertEquals("titlePrefix,titleContains,titleFuzzy;sortBy=title", query.getShape());
+
+        params.put("titleDistance", "4");
+        InvalidQueryException exception = assertThrows(InvalidQueryException.class, () -> FilmQuery.parse(params::get));
+        assertEquals("titleDistance", exception.getParameter());
+        params.put("titleDistance", "0");
+        assertEquals(0, FilmQuery.parse(params::get).getFilter().getTitleDistance());
+    }
+
+    @Test
+    @DisplayName("Verify equivalent parameters have the same canonical string")
+    void verifyEquivalentParametersAreCanonical() {
+        Map<String, String> exactYear = new HashMap<>();
+        exactYear.put("year", "2019");
+        exactYear.put("title", "PARASITE");
+        Map<String, String> yearRange = new HashMap<>();
+        yearRange.put("minYear", "2019");
+        yearRange.put("maxYear", "2019");
+        yearRange.put("title", "parasite");
+        yearRange.put("sortBy", "unknown");
+
+        assertEquals(FilmQuery.parse(exactYear::get).getCanonicalString(),
+                FilmQuery.parse(yearRange::get).getCanonicalString());
+        assertEquals("sortBy=title", FilmQuery.parse(name -> null).getCanonicalString());
+    }
+
+    @Test
+    @DisplayName("Verify titles with separators do not collide with other parameters")
+    void verifyTitleIsEncoded() {
+        Map<String, String> title = new HashMap<>();
+        title.put("title", "a&limit=1");
+        Map<String, String> titleWithLimit = new HashMap<>();
+        titleWithLimit.put("title", "a");
+        titleWithLimit.put("limit", "1");
+
+        assertNotEquals(FilmQuery.compile(title::get).getCanonicalString(),
+                FilmQuery.compile(titleWithLimit::get).getCanonicalString());
+    }
+
+    @Test
+    @DisplayName("Verify invalid numbers and a negative limit are rejected with the parameter name")
+    void verifyInvalidValuesAreRejected() {
+        Map<String, String> params = new HashMap<>();
+        params.put("minAwards", "four");
+        InvalidQueryException exception = assertThrows(InvalidQueryException.class, () -> FilmQuery.parse(params::get));
+        assertEquals("minAwards", exception.getParameter());
+
+        params.clear();
+        params.put("limit", "-1");
+        assertEquals("limit", assertThrows(InvalidQueryException.class, () -> FilmQuery.compile(params::get)).getParameter());
+    }
+
+    @Test
+    @DisplayName("Verify repeated parameters reuse the compiled query")
+    void verifyCompiledQueryIsReused() {
+        Map<String, String> params = new HashMap<>();
+        params.put("nominations", "11");
+        params.put("sortBy", "year");
+
+        assertSame(FilmQuery.compile(params::get), FilmQuery.compile(new HashMap<>(params)::get));
+    }
+
+    @Test
+    @DisplayName("Verify a filter is compiled from the filter parameters only")
+    void verifyFilterIgnoresOtherParameters() {
+        Map<String, String> params = new HashMap<>();
+        params.put("minYear", "2018");
+        params.put("sortBy", "year");
+        params.put("limit", "-1");
+        params.put("cursor", "not a cursor");
+
+        assertEquals("minYear=2018&", FilmQuery.compileFilter(params::get).toCanonicalString());
+    }
+
+    @Test
+    @DisplayName("Verify a cursor is accepted for its own sort key only")
+    void verifyCursorMatchesSortKey() {
+        FilmTable table = new FilmTable.Builder().add("0", "Parasite", 2019, 4, 6, true, 0).build();
+        String token = FilmCursor.after(SortKey.YEAR, table, 0).encode();
+
+        Map<String, String> params = new HashMap<>();
+        params.put("sortBy", "year");
+        params.put("cursor", token);
+        FilmQuery query = FilmQuery.parse(params::get);
+        assertEquals(SortKey.YEAR, query.getCursor().getSortKey());
+        assertEquals("sortBy=year&cursor=" + token, query.getCanonicalString());
+
+        params.put("sortBy", "title");
+        assertEquals("cursor", assertThrows(InvalidQueryException.class, () -> FilmQuery.parse(params::get)).getParameter());
+
+        params.put("cursor", "not a cursor");
+        assertEquals("cursor", assertThrows(InvalidQueryException.class, () -> FilmQuery.parse(params::get)).getParameter());
+    }
+
+    @Test
+    @DisplayName("Verify the fields are parsed into a projection and unknown fields are rejected")
+    void verifyFieldsProjection() {
+        Map<String, String> params = new HashMap<>();
+        assertEquals(FilmField.ALL, FilmQuery.parse(params::get).getFields());
+
+        params.put("fields", "year, title");
+        FilmQuery query = FilmQuery.parse(params::get);
+        assertEquals(FilmField.TITLE.mask() | FilmField.YEAR.mask(), query.getFields());
+        assertEquals("sortBy=title&fields=title,year", query.getCanonicalString());
+
+        params.put("fields", "title,jcr:primaryType");
+        assertEquals("fields", assertThrows(InvalidQueryException.class, () -> FilmQuery.parse(params::get)).getParameter());
+        params.put("fields", ",");
+        assertEquals("fields", assertThrows(InvalidQueryException.class, () -> FilmQuery.parse(params::get)).getParameter());
+    }
+}
@@ -0,0 +1,94 @@
+package de.cyberport.core.index;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class FilmSnapshotTest {
+
+    private final AemContext context = new AemContext();
+
+    private FilmIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json("/oscars.json", "/content/oscars");
+        index = FilmIndex.build(context.resourceResolver().getResource("/content/oscars"));
+    }
+
+    @Test
+    @DisplayName("Verify a restored snapshot has the films, sort orders and selections of the index")
+    void verifySnapshotRoundTrip(@TempDir final Path directory) throws IOException {
+        Path file = directory.resolve("oscars.films");
+        FilmSnapshot.write(index, file);
+        FilmIndex restored = FilmSnapshot.read(file, null);
+
+        FilmTable expected = index.getTable();
+        FilmTable actual = restored.getTable();
+        assertEquals(index.getContainerPath(), restored.getContainerPath());
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getName(row), actual.getName(row));
+            assertEquals(expected.getTitle(row), actual.getTitle(row));
+            assertEquals(expected.getYear(row), actual.getYear(row));
+            assertEquals(expected.getAwards(row), actual.getAwards(row));
+            assertEquals(expected.getNominations(row), actual.getNominations(row));
+            assertEquals(expected.getNumberOfReferences(row), actual.getNumberOfReferences(row));
+        }
+        assertEquals(expected.getBestPictures(), actual.getBestPictures());
+        FilmFilter filter = FilmFilter.builder().minYear(1990).minAwards(2).build();
+        for (SortKey sortKey : SortKey.values()) {
+            assertArrayEquals(index.getSortOrder(sortKey), restored.getSortOrder(sortKey));
+            assertArrayEquals(index.select(filter, sortKey, 20), restored.select(filter, sortKey, 20));
+        }
+        assertEquals(FilmSnapshot.checksum(index), FilmSnapshot.checksum(restored));
+    }
+
+    @Test
+    @DisplayName("Verify a snapshot with a changed byte is rejected")
+    void verifyCorruptSnapshotIsRejected(@TempDir final Path directory) throws IOException {
+        Path file = directory.resolve("oscars.films");
+        FilmSnapshot.write(index, file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> FilmSnapshot.read(file, null));
+    }
+
+    @Test
+    @DisplayName("Verify files of another format or version are rejected")
+    void verifyForeignFilesAreRejected(@TempDir final Path directory) throws IOException {
+        Path file = directory.resolve("oscars.films");
+        FilmSnapshot.write(index, file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(4, FilmSnapshot.VERSION + 1);
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> FilmSnapshot.read(file, null));
+
+        ByteBuffer.wrap(bytes).putInt(0, 0);
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> FilmSnapshot.read(file, null));
+
+        Files.write(file, new byte[] { 1, 2, 3 });
+        assertThrows(IOException.class, () -> FilmSnapshot.read(file, null));
+    }
+}
@@ -0,0 +1,56 @@
+package de.cyberport.core.index;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class FilmTableTest {
+
+    private final AemContext context = new AemContext();
+
+    private FilmTable underTest;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json("/oscars.json", "/content/oscars");
+        underTest = FilmTable.fromContainer(context.resourceResolver().getResource("/content/oscars"));
+    }
+
+    @Test
+    @DisplayName("Verify the table contains one row per film in the order of the container")
+    void verifyRowsFollowContainerOrder() {
+        assertEquals(1316, underTest.size());
+        assertEquals("Zorba the Greek", underTest.getTitle(0));
+        assertEquals(1964, underTest.getYear(0));
+        assertEquals(3, underTest.getAwards(0));
+        assertEquals(7, underTest.getNominations(0));
+        assertFalse(underTest.isBestPicture(0));
+        assertEquals(875, underTest.getNumberOfReferences(0));
+        assertTrue(underTest.isBestPicture(1));
+    }
+
+    @Test
+    @DisplayName("Verify films with the same title share one title dictionary entry")
+    void verifyTitlesAreDeduplicated() {
+        FilmTable table = new FilmTable.Builder()
+                .add("0", "Little Women", 1949, 1, 2, false, 10)
+                .add("1", "Little Women", 1994, 0, 3, false, 20)
+                .add("2", "Little Women", 2019, 1, 6, false, 30)
+                .build();
+        assertEquals(3, table.size());
+        assertEquals(1, table.getDistinctTitleCount());
+        assertEquals("Little Women", table.getTitle(2));
+    }
+}
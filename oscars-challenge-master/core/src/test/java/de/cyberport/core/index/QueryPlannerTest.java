@@ -0,0 +1,115 @@
+package de.cyberport.core.index;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Planner decisions on the distribution of oscars.json: 1316 films from 1927 to 2019 with 16 films
+ * in 2019, 110 films with at least 4 awards, 22 films with 11 nominations and 92 best pictures.
+ *
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class QueryPlannerTest {
+
+    private final AemContext context = new AemContext();
+
+    private FilmIndex underTest;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json("/oscars.json", "/content/oscars");
+        Resource container = context.resourceResolver().getResource("/content/oscars");
+        underTest = FilmIndex.build(container);
+    }
+
+    @Test
+    @DisplayName("Verify the column statistics count the rows of a range exactly")
+    void verifyColumnStatisticsCounts() {
+        FilmTable table = underTest.getTable();
+        ColumnStatistics years = BitmapColumnIndex.build(table.size(), table::getYear).getStatistics();
+        ColumnStatistics awards = BitmapColumnIndex.build(table.size(), table::getAwards).getStatistics();
+
+        assertEquals(16, years.count(2019, 2019));
+        assertEquals(table.size(), years.count(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(0, years.count(1800, 1800));
+        assertEquals(0, years.count(2019, 2018));
+        assertEquals(110, awards.count(4, Integer.MAX_VALUE));
+        assertEquals(IntStream.range(0, table.size()).filter(row -> table.getYear(row) >= 1950 && table.getYear(row) <= 1960).count(),
+                years.count(1950, 1960));
+    }
+
+    @Test
+    @DisplayName("Verify the most selective predicate is evaluated first")
+    void verifyMostSelectivePredicateFirst() {
+        QueryPlan plan = underTest.plan(FilmFilter.builder().minAwards(4).year(2019).build());
+
+        assertEquals(QueryPlan.AccessPath.BITMAP, plan.getAccessPath());
+        assertEquals(Arrays.asList(QueryPlan.Predicate.YEAR, QueryPlan.Predicate.AWARDS), plan.getIndexedPredicates());
+        assertFalse(plan.isResidualCheck());
+        assertEquals(1, plan.getEstimatedRows());
+
+        plan = underTest.plan(FilmFilter.builder().bestPicture(true).nominations(11).build());
+        assertEquals(Arrays.asList(QueryPlan.Predicate.NOMINATIONS, QueryPlan.Predicate.BEST_PICTURE), plan.getIndexedPredicates());
+    }
+
+    @Test
+    @DisplayName("Verify unselective predicates are checked per row instead of intersected")
+    void verifyUnselectivePredicateIsResidual() {
+        FilmFilter filter = FilmFilter.builder().minYear(1950).minAwards(4).build();
+        QueryPlan plan = underTest.plan(filter);
+
+        assertEquals(QueryPlan.AccessPath.BITMAP, plan.getAccessPath());
+        assertEquals(Collections.singletonList(QueryPlan.Predicate.AWARDS), plan.getIndexedPredicates());
+        assertTrue(plan.isResidualCheck());
+        assertArrayEquals(scan(filter, SortKey.AWARDS), underTest.select(filter, SortKey.AWARDS));
+    }
+
+    @Test
+    @DisplayName("Verify the sort order is scanned when no predicate is selective")
+    void verifyScanWithoutSelectivePredicate() {
+        FilmFilter filter = FilmFilter.builder().bestPicture(false).build();
+        QueryPlan plan = underTest.plan(filter);
+        assertEquals(QueryPlan.AccessPath.SCAN, plan.getAccessPath());
+        assertTrue(plan.isResidualCheck());
+        assertArrayEquals(scan(filter, SortKey.YEAR), underTest.select(filter, SortKey.YEAR));
+
+        plan = underTest.plan(FilmFilter.builder().minYear(1927).build());
+        assertEquals(QueryPlan.AccessPath.SCAN, plan.getAccessPath());
+        assertFalse(plan.isResidualCheck());
+        assertEquals(underTest.size(), plan.getEstimatedRows());
+    }
+
+    @Test
+    @DisplayName("Verify a title filter is looked up unless another predicate matches no row")
+    void verifyTitleLookupAndEmptyPlan() {
+        QueryPlan plan = underTest.plan(FilmFilter.builder().title("Parasite").bestPicture(true).build());
+        assertEquals(QueryPlan.AccessPath.TITLE_LOOKUP, plan.getAccessPath());
+        assertTrue(plan.isResidualCheck());
+
+        FilmFilter filter = FilmFilter.builder().title("Parasite").year(1800).build();
+        assertEquals(QueryPlan.AccessPath.EMPTY, underTest.plan(filter).getAccessPath());
+        assertEquals(0, underTest.select(filter, SortKey.TITLE).length);
+    }
+
+    private int[] scan(final FilmFilter filter, final SortKey sortKey) {
+        return Arrays.stream(underTest.getSortOrder(sortKey))
+                .filter(row -> filter.matches(underTest.getTable(), row))
+                .toArray();
+    }
+}
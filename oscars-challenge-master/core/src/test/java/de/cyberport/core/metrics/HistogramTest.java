@@ -0,0 +1,47 @@
+package de.cyberport.core.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+class HistogramTest {
+
+    @Test
+    @DisplayName("Verify every value lies in a bucket whose upper bound is at most 12.5% above it")
+    void verifyBucketBounds() {
+        for (long next = 0; next < 100000; next += 1 + next / 64) {
+            final long value = next;
+            final int bucket = Histogram.bucket(value);
+            assertTrue(Histogram.upperBound(bucket) >= value, () -> "Upper bound below " + value);
+            assertTrue(bucket == 0 || Histogram.upperBound(bucket - 1) < value, () -> "Bucket too high for " + value);
+            assertTrue(Histogram.upperBound(bucket) <= value + value / 8, () -> "Bucket too wide for " + value);
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    @DisplayName("Verify percentiles, mean and reset")
+    void verifyPercentiles() {
+        final Histogram underTest = new Histogram();
+        assertEquals(0, underTest.getPercentile(99));
+        for (long value = 1; value <= 100; value++) {
+            underTest.record(value);
+        }
+        underTest.record(-1);
+        assertEquals(101, underTest.getCount());
+        assertEquals(50, underTest.getMean(), 0.01);
+        assertEquals(51, underTest.getPercentile(50));
+        assertEquals(95, underTest.getPercentile(94));
+        assertEquals(103, underTest.getPercentile(100));
+
+        underTest.reset();
+        assertEquals(0, underTest.getCount());
+        assertEquals(0, underTest.getPercentile(50));
+    }
+}
@@ -0,0 +1,59 @@
+package de.cyberport.core.metrics;
+
+import de.cyberport.core.testing.LoadHarness;
+import de.cyberport.core.testing.LoadReport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+class SlowQueryLogTest {
+
+    @Test
+    @DisplayName("Verify the newest entries are returned first once the log wraps around")
+    void verifyNewestEntriesAreKept() {
+        final SlowQueryLog underTest = new SlowQueryLog(3);
+        for (int query = 0; query < 5; query++) {
+            underTest.add(slowQuery(query));
+        }
+
+        final List<SlowQuery> entries = underTest.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals("4", entries.get(0).getQuery());
+        assertEquals("3", entries.get(1).getQuery());
+        assertEquals("2", entries.get(2).getQuery());
+        assertEquals(5, underTest.getAddedCount());
+    }
+
+    @Test
+    @DisplayName("Verify concurrent writers fill every slot with a distinct entry")
+    void verifyConcurrentAdds() throws InterruptedException {
+        final SlowQueryLog underTest = new SlowQueryLog(64);
+        final LoadReport report = new LoadHarness(8, 0, 125).run(random -> {
+            underTest.add(slowQuery(random.nextInt()));
+            return true;
+        });
+
+        assertEquals(0, report.getErrors());
+        assertEquals(1000, underTest.getAddedCount());
+        final Set<SlowQuery> entries = new HashSet<>(underTest.getEntries());
+        assertEquals(64, entries.size());
+        assertTrue(entries.stream().allMatch(entry -> entry.getContainerPath().equals("/content/films")));
+    }
+
+    private static SlowQuery slowQuery(final int query) {
+        final QueryTrace trace = new QueryTrace(System.nanoTime());
+        trace.setShape("all;sortBy=title");
+        trace.endPhase(QueryTrace.Phase.SELECT);
+        return new SlowQuery(System.currentTimeMillis(), "/content/films", String.valueOf(query), 0, trace);
+    }
+}
@@ -0,0 +1,75 @@
+package de.cyberport.core.serialization;
+
+import de.cyberport.core.index.FilmField;
+import de.cyberport.core.index.FilmTable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+class FilmBinaryWriterTest {
+
+    private final FilmTable table = new FilmTable.Builder()
+            .add("0", "Parasite", 2019, 4, 6, true, 8855)
+            .add("1", "Amélie", 2001, 0, 5, false, 0)
+            .build();
+
+    @Test
+    @DisplayName("Verify the decoded rows equal the written rows in the given order")
+    void verifyRowsAreDecoded() throws IOException {
+        FilmBinaryReader.Result result = FilmBinaryReader.read(write(new int[] { 1, 0 }, FilmField.ALL, null));
+        assertEquals(FilmField.ALL, result.getFields());
+        assertEquals(2, result.size());
+        assertEquals("Amélie", result.getTitle(0));
+        assertEquals(2001, result.getYear(0));
+        assertEquals(0, result.getAwards(0));
+        assertEquals(5, result.getNominations(0));
+        assertFalse(result.isBestPicture(0));
+        assertEquals(0, result.getNumberOfReferences(0));
+        assertEquals("Parasite", result.getTitle(1));
+        assertTrue(result.isBestPicture(1));
+        assertEquals(8855, result.getNumberOfReferences(1));
+        assertNull(result.getNext());
+    }
+
+    @Test
+    @DisplayName("Verify only the requested fields are written, together with the next cursor")
+    void verifyProjectedFieldsAreWritten() throws IOException {
+        byte[] body = write(new int[] { 0 }, FilmField.YEAR.mask() | FilmField.IS_BEST_PICTURE.mask(), "abc");
+        // header of 11 bytes, year and isBestPicture of 5 bytes, next cursor of 7 bytes
+        assertEquals(23, body.length);
+        FilmBinaryReader.Result result = FilmBinaryReader.read(body);
+        assertEquals(2019, result.getYear(0));
+        assertTrue(result.isBestPicture(0));
+        assertEquals("abc", result.getNext());
+        assertThrows(NullPointerException.class, () -> result.getTitle(0));
+    }
+
+    @Test
+    @DisplayName("Verify bodies of another format, another version or truncated bodies are rejected")
+    void verifyInvalidBodiesAreRejected() throws IOException {
+        byte[] body = write(new int[] { 0, 1 }, FilmField.ALL, null);
+        assertThrows(IOException.class, () -> FilmBinaryReader.read(Arrays.copyOf(body, body.length - 1)));
+        assertThrows(IOException.class, () -> FilmBinaryReader.read("{\"result\":[]}".getBytes("UTF-8")));
+        body[5] = 2;
+        assertThrows(IOException.class, () -> FilmBinaryReader.read(body));
+    }
+
+    private byte[] write(final int[] rows, final int fields, final String next) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new FilmBinaryWriter(output).writeResult(table, rows, fields, next);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package de.cyberport.core.serialization;
+
+import de.cyberport.core.index.FilmField;
+import de.cyberport.core.index.FilmTable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+class FilmJsonWriterTest {
+
+    @Test
+    @DisplayName("Verify an empty result is written as an empty array")
+    void verifyEmptyResult() throws IOException {
+        FilmTable table = new FilmTable.Builder().build();
+        assertEquals("{\"result\":[]}", write(table, new int[0]));
+    }
+
+    @Test
+    @DisplayName("Verify an error message is written as escaped error property")
+    void verifyErrorIsWritten() throws IOException {
+        StringWriter writer = new StringWriter();
+        new FilmJsonWriter(writer).writeError("Invalid value '\"' for parameter title");
+        assertEquals("{\"error\":\"Invalid value '\\\"' for parameter title\"}", writer.toString());
+    }
+
+    @Test
+    @DisplayName("Verify only the requested fields are written, together with the next cursor")
+    void verifyProjectedFieldsAreWritten() throws IOException {
+        FilmTable table = new FilmTable.Builder()
+                .add("0", "Parasite", 2019, 4, 6, true, 8855)
+                .build();
+        StringWriter writer = new StringWriter();
+        new FilmJsonWriter(writer).writeResult(table, new int[] { 0 },
+                FilmField.YEAR.mask() | FilmField.IS_BEST_PICTURE.mask(), "abc");
+        assertEquals("{\"result\":[{\"year\":\"2019\",\"isBestPicture\":true}],\"next\":\"abc\"}", writer.toString());
+    }
+
+    @Test
+    @DisplayName("Verify the rows are written in the given order with the documented property types")
+    void verifyRowsAreWrittenWithTypedProperties() throws IOException, JSONException {
+        FilmTable table = new FilmTable.Builder()
+                .add("0", "Parasite", 2019, 4, 6, true, 8855)
+                .add("1", "Roma", 2018, 3, 10, false, 0)
+                .build();
+        JSONAssert.assertEquals(
+                "{result:[{title:\"Roma\",year:\"2018\",awards:3,nominations:10,isBestPicture:false,numberOfReferences:0},"
+                        + "{title:\"Parasite\",year:\"2019\",awards:4,nominations:6,isBestPicture:true,numberOfReferences:8855}]}",
+                write(table, new int[] { 1, 0 }),
+                JSONCompareMode.STRICT);
+    }
+
+    @Test
+    @DisplayName("Verify quotes, backslashes and control characters in titles are escaped")
+    void verifyTitlesAreEscaped() throws IOException, JSONException {
+        String title = "\"Quoted\" \\ back\nslash\t ";
+        FilmTable table = new FilmTable.Builder().add("0", title, 1999, 0, 1, false, -5).build();
+        JSONObject film = new JSONObject(write(table, new int[] { 0 })).getJSONArray("result").getJSONObject(0);
+        assertEquals(title, film.getString("title"));
+        assertEquals(-5, film.getInt("numberOfReferences"));
+    }
+
+    @Test
+    @DisplayName("Verify results larger than the buffer are written completely")
+    void verifyResultLargerThanBuffer() throws IOException, JSONException {
+        FilmTable.Builder builder = new FilmTable.Builder();
+        int[] rows = new int[2000];
+        for (int row = 0; row < rows.length; row++) {
+            builder.add(String.valueOf(row), "Film " + row, 1900 + row % 100, row % 12, row % 15, row % 7 == 0, row * 1000);
+            rows[row] = row;
+        }
+        JSONArray result = new JSONObject(write(builder.build(), rows)).getJSONArray("result");
+        assertEquals(2000, result.length());
+        assertEquals("Film 1999", result.getJSONObject(1999).getString("title"));
+        assertEquals(1999000, result.getJSONObject(1999).getInt("numberOfReferences"));
+    }
+
+    private static String write(final FilmTable table, final int[] rows) throws IOException {
+        StringWriter writer = new StringWriter();
+        new FilmJsonWriter(writer).writeResult(table, rows);
+        return writer.toString();
+    }
+}
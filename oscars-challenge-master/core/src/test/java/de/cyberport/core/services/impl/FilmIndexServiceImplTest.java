@@ -0,0 +1,283 @@
+package de.cyberport.core.services.impl;
+
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmSnapshot;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.observation.ResourceChange;
+import org.apache.sling.api.resource.observation.ResourceChange.ChangeType;
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.osgi.framework.Constants;
+
+import de.cyberport.core.testing.LoadHarness;
+import de.cyberport.core.testing.LoadReport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class FilmIndexServiceImplTest {
+
+    private static final String CONTAINER_PATH = "/content/oscars";
+
+    private final AemContext context = new AemContext();
+
+    private FilmIndexServiceImpl underTest;
+
+    private Resource container;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json("/oscars.json", CONTAINER_PATH);
+        container = context.resourceResolver().getResource(CONTAINER_PATH);
+        underTest = context.registerInjectActivateService(new FilmIndexServiceImpl());
+    }
+
+    @Test
+    @DisplayName("Verify the index contains all the films below the container")
+    void verifyIndexContainsAllFilms() {
+        FilmIndex index = underTest.getIndex(container);
+        assertEquals(CONTAINER_PATH, index.getContainerPath());
+        assertEquals(1316, index.size());
+    }
+
+    @Test
+    @DisplayName("Verify the index is built once and reused for the following requests")
+    void verifyIndexIsReused() {
+        assertSame(underTest.getIndex(container), underTest.getIndex(container));
+    }
+
+    @Test
+    @DisplayName("Verify concurrent lookups of a container share the build of its index")
+    void verifyConcurrentLookupsShareOneBuild() throws InterruptedException {
+        Set<FilmIndex> built = ConcurrentHashMap.newKeySet();
+
+        LoadReport report = new LoadHarness(8, 0, 64).run(random -> {
+            built.add(underTest.getIndex(container));
+            return true;
+        });
+
+        assertEquals(0, report.getErrors());
+        assertEquals(1, built.size());
+    }
+
+    @Test
+    @DisplayName("Verify the index is rebuilt after a film entry below the container changed")
+    void verifyIndexIsRebuiltAfterFilmEntryChange() throws PersistenceException {
+        FilmIndex before = underTest.getIndex(container);
+        context.resourceResolver().getResource(CONTAINER_PATH + "/42").adaptTo(ModifiableValueMap.class)
+                .put("awards", 12L);
+        context.resourceResolver().commit();
+        underTest.onChange(Collections.singletonList(change(ChangeType.CHANGED, CONTAINER_PATH + "/42")));
+        assertNotSame(before, underTest.getIndex(container));
+    }
+
+    @Test
+    @DisplayName("Verify the index is rebuilt after the container was removed")
+    void verifyIndexIsRebuiltAfterContainerRemoval() {
+        FilmIndex before = underTest.getIndex(container);
+        underTest.onChange(Collections.singletonList(change(ChangeType.REMOVED, "/content")));
+        assertNotSame(before, underTest.getIndex(container));
+    }
+
+    @Test
+    @DisplayName("Verify the index is kept after a change outside of the container")
+    void verifyIndexIsKeptAfterUnrelatedChange() {
+        FilmIndex before = underTest.getIndex(container);
+        underTest.onChange(Collections.singletonList(change(ChangeType.ADDED, "/content/oscars-archive/1")));
+        assertSame(before, underTest.getIndex(container));
+    }
+
+    @Test
+    @DisplayName("Verify a references update is applied in place and keeps the index version")
+    void verifyReferencesUpdateKeepsIndexVersion() {
+        FilmIndex before = underTest.getIndex(container);
+        int row = before.getTable().getRow("1315");
+
+        assertEquals(1, underTest.updateReferences(Collections.singletonMap(CONTAINER_PATH + "/1315", 9000)));
+
+        FilmIndex after = underTest.getIndex(container);
+        assertEquals(9000, after.getTable().getNumberOfReferences(row));
+        assertEquals(8279, before.getTable().getNumberOfReferences(row));
+        assertEquals(before.getVersion(), after.getVersion());
+        assertNotEquals(before.getReferencesVersion(), after.getReferencesVersion());
+    }
+
+    @Test
+    @DisplayName("Verify concurrent references updates are not lost and readers see consistent snapshots")
+    void verifyConcurrentReferencesUpdates() throws InterruptedException {
+        FilmIndex before = underTest.getIndex(container);
+        AtomicInteger films = new AtomicInteger();
+
+        LoadReport report = new LoadHarness(8, 0, 100).run(random -> {
+            if (random.nextBoolean()) {
+                int film = films.getAndIncrement();
+                String path = CONTAINER_PATH + "/" + film;
+                return underTest.updateReferences(Collections.singletonMap(path, -film - 1)) == 1;
+            }
+            FilmIndex index = underTest.getIndex(container);
+            return index.getVersion() == before.getVersion() && index.size() == 1316;
+        });
+
+        assertEquals(0, report.getErrors());
+        FilmIndex after = underTest.getIndex(container);
+        assertEquals(before.getVersion(), after.getVersion());
+        assertTrue(films.get() > 0);
+        for (int film = 0; film < films.get(); film++) {
+            int row = after.getTable().getRow(String.valueOf(film));
+            assertEquals(-film - 1, after.getTable().getNumberOfReferences(row));
+        }
+    }
+
+    @Test
+    @DisplayName("Verify a references update of unknown films changes nothing")
+    void verifyReferencesUpdateOfUnknownFilmsIsIgnored() {
+        FilmIndex before = underTest.getIndex(container);
+        assertEquals(0, underTest.updateReferences(Collections.singletonMap(CONTAINER_PATH + "/unknown", 1)));
+        assertEquals(0, underTest.updateReferences(Collections.singletonMap("/content/other/1", 1)));
+        assertSame(before, underTest.getIndex(container));
+    }
+
+    @Test
+    @DisplayName("Verify a numberOfReferences change event is read on the next lookup without a rebuild")
+    void verifyReferencesChangeEventIsAppliedWithoutRebuild() throws PersistenceException {
+        FilmIndex before = underTest.getIndex(container);
+        context.resourceResolver().getResource(CONTAINER_PATH + "/0").adaptTo(ModifiableValueMap.class)
+                .put("numberOfReferences", 1234L);
+        context.resourceResolver().commit();
+        underTest.onChange(Collections.singletonList(change(ChangeType.CHANGED, CONTAINER_PATH + "/0")));
+
+        FilmIndex after = underTest.getIndex(container);
+        assertEquals(before.getVersion(), after.getVersion());
+        assertEquals(1234, after.getTable().getNumberOfReferences(after.getTable().getRow("0")));
+    }
+
+    @Test
+    @DisplayName("Verify an index is restored from its snapshot and replaced once the repository differs from it")
+    void verifyIndexIsRestoredFromSnapshotAndVerified(@TempDir final Path snapshots) throws Exception {
+        FilmIndexServiceImpl first = registerWithSnapshots(snapshots);
+        FilmIndex built = first.getIndex(container);
+        MockOsgi.deactivate(first, context.bundleContext());
+        Path file = snapshots.resolve("%2Fcontent%2Foscars.films");
+        assertTrue(Files.isRegularFile(file));
+        assertEquals(FilmSnapshot.checksum(built), FilmSnapshot.checksum(FilmSnapshot.read(file, null)));
+
+        context.resourceResolver().getResource(CONTAINER_PATH + "/0").adaptTo(ModifiableValueMap.class)
+                .put("title", "Restored");
+        context.resourceResolver().commit();
+        FilmIndexServiceImpl second = registerWithSnapshots(snapshots);
+        FilmIndex restored = second.getIndex(container);
+        int row = restored.getTable().getRow("0");
+        assertNotEquals(built.getVersion(), restored.getVersion());
+        assertEquals(built.getTable().getTitle(row), restored.getTable().getTitle(row));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (second.getIndex(container).getVersion() == restored.getVersion()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("Restored", second.getIndex(container).getTable().getTitle(row));
+        MockOsgi.deactivate(second, context.bundleContext());
+        assertEquals("Restored", FilmSnapshot.read(file, null).getTable().getTitle(row));
+    }
+
+    @Test
+    @DisplayName("Verify the snapshot of an invalidated index is deleted and not restored")
+    void verifySnapshotIsDeletedOnInvalidation(@TempDir final Path snapshots) throws Exception {
+        FilmIndexServiceImpl underTest = registerWithSnapshots(snapshots);
+        Path file = snapshots.resolve("%2Fcontent%2Foscars.films");
+        underTest.getIndex(container);
+        underTest.onChange(Collections.singletonList(change(ChangeType.REMOVED, CONTAINER_PATH + "/42")));
+        MockOsgi.deactivate(underTest, context.bundleContext());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    @DisplayName("Verify a restored index is dropped when it cannot be verified")
+    void verifyUnverifiedRestoredIndexIsDropped(@TempDir final Path snapshots) throws Exception {
+        FilmIndexServiceImpl first = registerWithSnapshots(snapshots);
+        first.getIndex(container);
+        MockOsgi.deactivate(first, context.bundleContext());
+        Path file = snapshots.resolve("%2Fcontent%2Foscars.films");
+        assertTrue(Files.isRegularFile(file));
+
+        ResourceResolverFactory factory = mock(ResourceResolverFactory.class);
+        when(factory.getServiceResourceResolver(any())).thenThrow(new LoginException("No service user"));
+        context.registerService(ResourceResolverFactory.class, factory, Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+        FilmIndexServiceImpl second = registerWithSnapshots(snapshots);
+        assertEquals(1316, second.getIndex(container).size());
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (Files.exists(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(file));
+        MockOsgi.deactivate(second, context.bundleContext());
+    }
+
+    @Test
+    @DisplayName("Verify a restored index is dropped when its container cannot be read")
+    void verifyUnreadableRestoredIndexIsDropped(@TempDir final Path snapshots) throws Exception {
+        FilmIndexServiceImpl first = registerWithSnapshots(snapshots);
+        first.getIndex(container);
+        MockOsgi.deactivate(first, context.bundleContext());
+        Path file = snapshots.resolve("%2Fcontent%2Foscars.films");
+
+        ResourceResolver resolver = mock(ResourceResolver.class);
+        when(resolver.getResource(CONTAINER_PATH)).thenThrow(new IllegalStateException("Repository unavailable"));
+        ResourceResolverFactory factory = mock(ResourceResolverFactory.class);
+        when(factory.getServiceResourceResolver(any())).thenReturn(resolver);
+        context.registerService(ResourceResolverFactory.class, factory, Constants.SERVICE_RANKING, Integer.MAX_VALUE);
+        FilmIndexServiceImpl second = registerWithSnapshots(snapshots);
+        assertEquals(1316, second.getIndex(container).size());
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (Files.exists(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(file));
+        MockOsgi.deactivate(second, context.bundleContext());
+    }
+
+    private FilmIndexServiceImpl registerWithSnapshots(final Path snapshots) throws IOException {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("snapshotDirectory", snapshots.toString());
+        return context.registerInjectActivateService(new FilmIndexServiceImpl(), properties);
+    }
+
+    private static ResourceChange change(final ChangeType type, final String path) {
+        return new ResourceChange(type, path, false);
+    }
+}
@@ -0,0 +1,163 @@
+package de.cyberport.core.services.impl;
+
+import de.cyberport.core.services.CachedResult;
+import de.cyberport.core.testing.LoadHarness;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class FilmResultCacheImplTest {
+
+    private final AemContext context = new AemContext();
+
+    @Test
+    @DisplayName("Verify a cached result is returned for the index version it was computed from only")
+    void verifyResultIsBoundToIndexVersion() {
+        FilmResultCacheImpl underTest = register(10, 300);
+        CachedResult result = underTest.put("/content/oscars?year=2019&", 1L, 1L, new int[0], body("{\"result\":[]}"));
+        assertSame(result, underTest.get("/content/oscars?year=2019&", 1L));
+        assertNull(underTest.get("/content/oscars?year=2019&", 2L));
+        assertNull(underTest.get("/content/oscars?year=2019&", 1L));
+    }
+
+    @Test
+    @DisplayName("Verify the entity tag depends on the content only")
+    void verifyEtagDependsOnContent() {
+        FilmResultCacheImpl underTest = register(10, 300);
+        String etag = underTest.put("a", 1L, 1L, new int[0], body("{\"result\":[]}")).getEtag();
+        assertEquals(etag, underTest.put("b", 2L, 2L, new int[0], body("{\"result\":[]}")).getEtag());
+        assertNotEquals(etag, underTest.put("c", 1L, 1L, new int[0], body("{\"result\":[{}]}")).getEtag());
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+    }
+
+    @Test
+    @DisplayName("Verify the gzip body is compressed once and decompresses to the body")
+    void verifyGzipBodyIsKeptWithResult() throws IOException {
+        FilmResultCacheImpl underTest = register(10, 300);
+        StringBuilder json = new StringBuilder("{\"result\":[");
+        for (int i = 0; i < 100; i++) {
+            json.append(i > 0 ? "," : "").append("{\"title\":\"Film ").append(i).append("\"}");
+        }
+        CachedResult result = underTest.put("a", 1L, 1L, new int[0], body(json.append("]}").toString()));
+
+        assertTrue(result.isCompressible());
+        assertSame(result.getGzipBody(), result.getGzipBody());
+        assertTrue(result.getGzipBody().length < result.getBody().length);
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(result.getGzipBody()))) {
+            assertArrayEquals(result.getBody(), IOUtils.toByteArray(gzip));
+        }
+        assertNotEquals(result.getEtag(), result.getGzipEtag());
+        assertFalse(underTest.put("b", 1L, 1L, new int[0], body("{\"result\":[]}")).isCompressible());
+    }
+
+    @Test
+    @DisplayName("Verify the oldest entries are evicted once the maximum size is exceeded")
+    void verifyOldestEntriesAreEvicted() throws InterruptedException {
+        FilmResultCacheImpl underTest = register(10, 300);
+        for (int i = 0; i < 11; i++) {
+            underTest.put("key" + i, 1L, 1L, new int[0], body("{}"));
+            Thread.sleep(2);
+        }
+        assertTrue(underTest.size() <= 10);
+        assertNull(underTest.get("key0", 1L));
+        assertNotNull(underTest.get("key10", 1L));
+    }
+
+    @Test
+    @DisplayName("Verify the size stays bounded under concurrent puts")
+    void verifySizeIsBoundedUnderConcurrentPuts() throws InterruptedException {
+        FilmResultCacheImpl underTest = register(100, 300);
+        assertEquals(0, new LoadHarness(8, 0, 2000).run(random -> {
+            underTest.put("key" + random.nextInt(100000), 1L, 1L, new int[0], body("{}"));
+            return true;
+        }).getErrors());
+        assertTrue(underTest.size() <= 100, "size: " + underTest.size());
+    }
+
+    @Test
+    @DisplayName("Verify the oldest entries are evicted once the maximum bytes are exceeded")
+    void verifyEntriesAreEvictedByBytes() throws InterruptedException {
+        FilmResultCacheImpl underTest = register(100, 300, 1000);
+        for (int i = 0; i < 5; i++) {
+            underTest.put("/content/oscars?key" + i, 1L, 1L, new int[25], new byte[200]);
+            Thread.sleep(2);
+        }
+        assertTrue(underTest.bytes() <= 1000, "bytes: " + underTest.bytes());
+        assertNull(underTest.get("/content/oscars?key0", 1L));
+        assertNotNull(underTest.get("/content/oscars?key4", 1L));
+    }
+
+    @Test
+    @DisplayName("Verify compressed bodies count against the maximum bytes")
+    void verifyGzipBodiesAreCounted() {
+        FilmResultCacheImpl underTest = register(100, 300);
+        CachedResult result = underTest.put("a", 1L, 1L, new int[2], new byte[2000]);
+        assertEquals(2008, result.getSize());
+        assertEquals(2008 + result.getGzipBody().length, result.getSize());
+    }
+
+    @Test
+    @DisplayName("Verify entries of superseded index versions are dropped on eviction")
+    void verifySupersededEntriesAreEvicted() {
+        FilmResultCacheImpl underTest = register(3, 300);
+        underTest.put("/content/oscars?year=2018&", 1L, 1L, new int[0], body("{}"));
+        underTest.put("/content/oscars.bin?year=2018&", 1L, 1L, new int[0], body("{}"));
+        underTest.put("/content/oscars?year=2019&", 2L, 2L, new int[0], body("{}"));
+        underTest.put("/content/other?year=2019&", 1L, 1L, new int[0], body("{}"));
+
+        assertEquals(3, underTest.size());
+        assertNull(underTest.get("/content/oscars?year=2018&", 1L));
+        assertNotNull(underTest.get("/content/oscars.bin?year=2018&", 1L));
+        assertNotNull(underTest.get("/content/oscars?year=2019&", 2L));
+        assertNotNull(underTest.get("/content/other?year=2019&", 1L));
+    }
+
+    @Test
+    @DisplayName("Verify entries expire after the maximum age")
+    void verifyEntriesExpire() {
+        FilmResultCacheImpl underTest = register(10, 0);
+        underTest.put("key", 1L, 1L, new int[0], body("{}"));
+        assertNull(underTest.get("key", 1L));
+    }
+
+    private FilmResultCacheImpl register(final int maxEntries, final int maxAgeSeconds) {
+        return register(maxEntries, maxAgeSeconds, 64L * 1024 * 1024);
+    }
+
+    private FilmResultCacheImpl register(final int maxEntries, final int maxAgeSeconds, final long maxBytes) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("maxEntries", maxEntries);
+        properties.put("maxAgeSeconds", maxAgeSeconds);
+        properties.put("maxBytes", maxBytes);
+        return context.registerInjectActivateService(new FilmResultCacheImpl(), properties);
+    }
+
+    private static byte[] body(final String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
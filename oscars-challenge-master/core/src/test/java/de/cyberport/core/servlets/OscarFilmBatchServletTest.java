@@ -0,0 +1,132 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.services.impl.FilmIndexServiceImpl;
+import de.cyberport.core.services.impl.FilmQueryMetricsImpl;
+import de.cyberport.core.services.impl.FilmResultCacheImpl;
+import de.cyberport.core.services.impl.FilmSlowQueryLogImpl;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class OscarFilmBatchServletTest {
+
+    private OscarFilmBatchServlet underTest;
+
+    private OscarFilmContainerServlet containerServlet;
+
+    private final AemContext context = new AemContext();
+
+    private final MockSlingHttpServletRequest request = context.request();
+    private final MockSlingHttpServletResponse response = context.response();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        context.load().json("/oscars.json", "/content/oscars");
+        context.currentResource("/content/oscars");
+        request.setResource(context.currentResource());
+        context.registerInjectActivateService(new FilmQueryMetricsImpl());
+        context.registerInjectActivateService(new FilmSlowQueryLogImpl());
+        context.registerInjectActivateService(new FilmIndexServiceImpl());
+        context.registerInjectActivateService(new FilmResultCacheImpl());
+        underTest = context.registerInjectActivateService(new OscarFilmBatchServlet());
+        containerServlet = context.registerInjectActivateService(new OscarFilmContainerServlet());
+    }
+
+    @Test
+    @DisplayName("Verify every query of the batch is answered like a single request")
+    void verifyBatchMatchesSingleRequests() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("q1", "year=2019&minAwards=4");
+        params.put("q2", "isBestPicture=true&sortBy=year&limit=3");
+        params.put("q3", "isBestPicture=false&limit=5");
+        params.put("q10", "maxYear=1990&sortBy=awards&limit=2&fields=title");
+        params.put("q11", "minYear=1927&limit=4");
+        params.put("title", "ignored");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertThat(response.getContentType(), containsString("application/json"));
+        JSONObject batch = new JSONObject(response.getOutputAsString());
+        assertEquals(5, batch.length());
+        Iterator<String> keys = batch.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            JSONAssert.assertEquals(single((String) params.get(key)), batch.getJSONObject(key).toString(), JSONCompareMode.STRICT);
+        }
+        JSONAssert.assertEquals("{q1:{result:[{title:\"Parasite\"}]}}", response.getOutputAsString(), JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    @DisplayName("Verify a batch with an invalid query is answered with Bad Request")
+    void verifyBadRequestWhenQueryIsInvalid() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("q1", "year=2019");
+        params.put("q2", "minAwards=many");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+        JSONAssert.assertEquals("{error:\"q2: Invalid value 'many' for parameter minAwards\"}",
+                response.getOutputAsString(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    @DisplayName("Verify a batch with two parameters of the same query number is answered with Bad Request")
+    void verifyBadRequestWhenQueryNumberIsDuplicated() throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("q1", "year=2019");
+        params.put("q01", "year=2018");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+        assertThat(response.getOutputAsString(), containsString("have the same query number"));
+    }
+
+    @Test
+    @DisplayName("Verify a batch without queries returns an empty object")
+    void verifyEmptyBatch() throws IOException {
+        request.setParameterMap(new HashMap<>());
+        underTest.doGet(request, response);
+        assertEquals("{}", response.getOutputAsString());
+    }
+
+    private String single(final String queryString) throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        for (String pair : queryString.split("&")) {
+            String[] nameValue = pair.split("=");
+            params.put(nameValue[0], nameValue[1]);
+        }
+        MockSlingHttpServletRequest singleRequest = new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        singleRequest.setResource(context.currentResource());
+        singleRequest.setParameterMap(params);
+        MockSlingHttpServletResponse singleResponse = new MockSlingHttpServletResponse();
+        containerServlet.doGet(singleRequest, singleResponse);
+        return singleResponse.getOutputAsString();
+    }
+}
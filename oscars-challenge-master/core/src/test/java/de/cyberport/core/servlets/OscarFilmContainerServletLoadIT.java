@@ -0,0 +1,137 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.metrics.Histogram;
+import de.cyberport.core.metrics.QueryTrace;
+import de.cyberport.core.services.impl.FilmIndexServiceImpl;
+import de.cyberport.core.services.impl.FilmQueryMetricsImpl;
+import de.cyberport.core.services.impl.FilmResultCacheImpl;
+import de.cyberport.core.services.impl.FilmSlowQueryLogImpl;
+import de.cyberport.core.testing.LoadHarness;
+import de.cyberport.core.testing.LoadReport;
+import de.cyberport.core.testing.SyntheticFilmContent;
+import de.cyberport.core.testing.SyntheticFilms;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test of the film container servlet with a container of generated films, driven from
+ * concurrent threads with a mix of browsing, filtering and lookup queries. The load is configured
+ * with the system properties load.films, load.threads, load.warmup and load.requests, the optional
+ * load.p99Millis fails the test when the 99th percentile of the latency exceeds it. The report is
+ * logged at INFO level, which failsafe prints through the slf4jtest.print.level system property.
+ *
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class OscarFilmContainerServletLoadIT {
+
+    private static final String CONTAINER_PATH = "/content/films";
+    private static final String[] SORT_KEYS = { "title", "year", "awards", "nominations" };
+
+    private static final int FILMS = Integer.getInteger("load.films", 100000);
+    private static final int THREADS = Integer.getInteger("load.threads", 8);
+    private static final int WARMUP = Integer.getInteger("load.warmup", 500);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 2000);
+    private static final String P99_MILLIS = System.getProperty("load.p99Millis");
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final AemContext context = new AemContext();
+
+    private OscarFilmContainerServlet underTest;
+
+    private FilmQueryMetricsImpl metrics;
+
+    private Resource container;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        container = SyntheticFilmContent.createContainer(context, CONTAINER_PATH, SyntheticFilms.DEFAULT, FILMS,
+                SyntheticFilms.DEFAULT_SEED);
+        metrics = context.registerInjectActivateService(new FilmQueryMetricsImpl());
+        context.registerInjectActivateService(new FilmSlowQueryLogImpl());
+        context.registerInjectActivateService(new FilmIndexServiceImpl());
+        context.registerInjectActivateService(new FilmResultCacheImpl());
+        underTest = context.registerInjectActivateService(new OscarFilmContainerServlet());
+    }
+
+    @Test
+    @DisplayName("Verify throughput and latency of concurrent mixed queries")
+    void verifyConcurrentMixedQueries() throws InterruptedException {
+        final LoadReport report = new LoadHarness(THREADS, WARMUP, REQUESTS).run(random -> {
+            final MockSlingHttpServletRequest request =
+                    new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+            final MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+            request.setResource(container);
+            request.setParameterMap(nextQuery(random));
+            if (random.nextBoolean()) {
+                request.addHeader(HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+            }
+            underTest.doGet(request, response);
+            return response.getStatus() == HttpServletResponse.SC_OK;
+        });
+
+        logger.info("Load of {} films: {}", FILMS, report);
+        for (QueryTrace.Phase phase : QueryTrace.Phase.values()) {
+            final Histogram latencies = metrics.getMetrics().getPhase(phase);
+            logger.info(String.format("  %-9s %6d requests, p50 %.3f ms, p99 %.3f ms", phase, latencies.getCount(),
+                    latencies.getPercentile(50) / 1e6, latencies.getPercentile(99) / 1e6));
+        }
+        logger.info(String.format("  cache hit rate %.3f, index hit rate %.3f", metrics.getCacheHitRate(),
+                metrics.getIndexHitRate()));
+        assertEquals(0, report.getErrors(), () -> "Failed requests, first failure: " + report.getFailure());
+        if (P99_MILLIS != null) {
+            assertTrue(report.getLatencyMillis(99) <= Double.parseDouble(P99_MILLIS), report::toString);
+        }
+    }
+
+    /**
+     * Next query of the mix, browsing pages of all films is the most frequent one
+     * @param random
+     * @return
+     */
+    private static Map<String, Object> nextQuery(final Random random) {
+        final Map<String, Object> parameters = new HashMap<>();
+        final int kind = random.nextInt(100);
+        if (kind < 30) {
+            parameters.put(SORT_BY, SORT_KEYS[random.nextInt(SORT_KEYS.length)]);
+            parameters.put(LIMIT, String.valueOf(10 + random.nextInt(91)));
+        } else if (kind < 50) {
+            parameters.put(YEAR, String.valueOf(1927 + random.nextInt(93)));
+        } else if (kind < 65) {
+            parameters.put(MIN_YEAR, String.valueOf(1927 + random.nextInt(93)));
+            parameters.put(MIN_AWARDS, String.valueOf(1 + random.nextInt(6)));
+            parameters.put(SORT_BY, SORT_KEYS[random.nextInt(SORT_KEYS.length)]);
+            parameters.put(LIMIT, "50");
+        } else if (kind < 80) {
+            parameters.put(TITLE, SyntheticFilms.DEFAULT.title(random.nextInt(FILMS)));
+        } else if (kind < 90) {
+            parameters.put(IS_BEST_PICTURE, "true");
+            parameters.put(SORT_BY, "year");
+            parameters.put(LIMIT, "100");
+        } else {
+            parameters.put(NOMINATIONS, String.valueOf(1 + random.nextInt(14)));
+            parameters.put(FIELDS, "title,year");
+        }
+        return parameters;
+    }
+}
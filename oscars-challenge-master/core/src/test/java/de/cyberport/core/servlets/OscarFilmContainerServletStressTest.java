@@ -0,0 +1,93 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.services.impl.FilmIndexServiceImpl;
+import de.cyberport.core.services.impl.FilmQueryMetricsImpl;
+import de.cyberport.core.services.impl.FilmResultCacheImpl;
+import de.cyberport.core.services.impl.FilmSlowQueryLogImpl;
+import de.cyberport.core.testing.LoadHarness;
+import de.cyberport.core.testing.LoadReport;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent requests against one servlet instance, with a result cache small enough to evict
+ * continuously, must answer exactly like the same requests sent one after another.
+ *
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class OscarFilmContainerServletStressTest {
+
+    private static final String[] SORT_KEYS = { "title", "year", "awards", "nominations" };
+
+    private final AemContext context = new AemContext();
+
+    private OscarFilmContainerServlet underTest;
+
+    private final List<Map<String, Object>> queries = new ArrayList<>();
+
+    private final List<String> expectedBodies = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        context.load().json("/oscars.json", "/content/oscars");
+        context.currentResource("/content/oscars");
+        context.registerInjectActivateService(new FilmQueryMetricsImpl());
+        context.registerInjectActivateService(new FilmSlowQueryLogImpl());
+        context.registerInjectActivateService(new FilmIndexServiceImpl());
+        final Map<String, Object> cacheProperties = new HashMap<>();
+        cacheProperties.put("maxEntries", 8);
+        context.registerInjectActivateService(new FilmResultCacheImpl(), cacheProperties);
+        underTest = context.registerInjectActivateService(new OscarFilmContainerServlet());
+
+        for (int year = 1990; year < 2020; year += 3) {
+            for (String sortKey : SORT_KEYS) {
+                final Map<String, Object> parameters = new HashMap<>();
+                parameters.put("minYear", String.valueOf(year));
+                parameters.put("sortBy", sortKey);
+                parameters.put("limit", String.valueOf(year % 50));
+                queries.add(parameters);
+            }
+        }
+        for (Map<String, Object> parameters : queries) {
+            expectedBodies.add(get(parameters).getOutputAsString());
+        }
+    }
+
+    @Test
+    @DisplayName("Verify concurrent responses equal sequential responses")
+    void verifyConcurrentResponsesEqualSequentialResponses() throws InterruptedException {
+        final LoadReport report = new LoadHarness(8, 0, 250).run(random -> {
+            final int query = random.nextInt(queries.size());
+            final MockSlingHttpServletResponse response = get(queries.get(query));
+            return response.getStatus() == 200 && expectedBodies.get(query).equals(response.getOutputAsString());
+        });
+
+        assertEquals(0, report.getErrors(), () -> "Unexpected responses, first failure: " + report.getFailure());
+    }
+
+    private MockSlingHttpServletResponse get(final Map<String, Object> parameters) throws IOException {
+        final MockSlingHttpServletRequest request =
+                new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        final MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        request.setResource(context.currentResource());
+        request.setParameterMap(parameters);
+        underTest.doGet(request, response);
+        return response;
+    }
+}
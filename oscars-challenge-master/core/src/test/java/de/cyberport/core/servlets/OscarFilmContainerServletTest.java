@@ -1,10 +1,22 @@
 package de.cyberport.core.servlets;
 
+import de.cyberport.core.metrics.QueryMetrics;
+import de.cyberport.core.metrics.QueryTrace;
+import de.cyberport.core.serialization.FilmBinaryReader;
+import de.cyberport.core.services.impl.FilmIndexServiceImpl;
+import de.cyberport.core.services.impl.FilmQueryMetricsImpl;
+import de.cyberport.core.services.impl.FilmResultCacheImpl;
+import de.cyberport.core.services.impl.FilmSlowQueryLogImpl;
 import io.wcm.testing.mock.aem.junit5.AemContext;
 import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.observation.ResourceChange;
 import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
 import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,12 +25,25 @@ import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.skyscreamer.jsonassert.comparator.ArraySizeComparator;
 
+import javax.management.openmbean.TabularData;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Collections;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Vitalii Afonin
@@ -27,7 +52,11 @@ import static org.hamcrest.Matchers.containsString;
 @ExtendWith(AemContextExtension.class)
 class OscarFilmContainerServletTest {
 
-    private OscarFilmContainerServlet underTest = new OscarFilmContainerServlet();
+    private OscarFilmContainerServlet underTest;
+
+    private FilmIndexServiceImpl filmIndexService;
+
+    private FilmQueryMetricsImpl filmQueryMetrics;
 
     private AemContext context = new AemContext();
 
@@ -39,6 +68,11 @@ class OscarFilmContainerServletTest {
         context.load().json("/oscars.json", "/content/oscars");
         context.currentResource("/content/oscars");
         request.setResource(context.currentResource());
+        filmQueryMetrics = context.registerInjectActivateService(new FilmQueryMetricsImpl());
+        context.registerInjectActivateService(new FilmSlowQueryLogImpl());
+        filmIndexService = context.registerInjectActivateService(new FilmIndexServiceImpl());
+        context.registerInjectActivateService(new FilmResultCacheImpl());
+        underTest = context.registerInjectActivateService(new OscarFilmContainerServlet());
     }
 
     @Test
@@ -490,4 +524,307 @@ class OscarFilmContainerServletTest {
                 new ArraySizeComparator(JSONCompareMode.LENIENT));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Verify Response contains the typed film properties only")
+    void verifyResponseContainsTypedFilmProperties() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("year", "2019");
+        params.put("minAwards", "4");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        JSONAssert.assertEquals(
+                "{result:[{title:\"Parasite\",year:\"2019\",awards:4,nominations:6,isBestPicture:true,numberOfReferences:8279}]}",
+                response.getOutputAsString(),
+                JSONCompareMode.STRICT);
+    }
+
+    @Test
+    @DisplayName("Verify Response is Not Modified when the ETag of the result is sent in If-None-Match")
+    void verifyNotModifiedWhenEtagMatches() throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("isBestPicture", "true");
+        params.put("sortBy", "year");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        String etag = response.getHeader("ETag");
+        assertThat(response.getHeader("Cache-Control"), containsString("max-age"));
+
+        request.addHeader("If-None-Match", "\"other\", " + etag);
+        MockSlingHttpServletResponse revalidation = new MockSlingHttpServletResponse();
+        underTest.doGet(request, revalidation);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, revalidation.getStatus());
+        assertEquals(etag, revalidation.getHeader("ETag"));
+        assertEquals(0, revalidation.getOutput().length);
+    }
+
+    @Test
+    @DisplayName("Verify Response is recomputed after a film below the container changed")
+    void verifyResponseIsRecomputedAfterFilmChange() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("title", "Parasite");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+
+        ModifiableValueMap properties = context.resourceResolver().getResource("/content/oscars/1315").adaptTo(ModifiableValueMap.class);
+        properties.put("awards", 5L);
+        filmIndexService.onChange(Collections.singletonList(
+                new ResourceChange(ResourceChange.ChangeType.CHANGED, "/content/oscars/1315", false)));
+
+        MockSlingHttpServletResponse changed = new MockSlingHttpServletResponse();
+        underTest.doGet(request, changed);
+        assertNotEquals(response.getHeader("ETag"), changed.getHeader("ETag"));
+        JSONAssert.assertEquals("{result:[{title:\"Parasite\",awards:5}]}", changed.getOutputAsString(), JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    @DisplayName("Verify Response contains the updated numberOfReferences after a references update")
+    void verifyResponseAfterReferencesUpdate() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("title", "Parasite");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+
+        filmIndexService.updateReferences(Collections.singletonMap("/content/oscars/1315", 9000));
+
+        MockSlingHttpServletResponse updated = new MockSlingHttpServletResponse();
+        underTest.doGet(request, updated);
+        assertNotEquals(response.getHeader("ETag"), updated.getHeader("ETag"));
+        JSONAssert.assertEquals("{result:[{title:\"Parasite\",numberOfReferences:9000}]}", updated.getOutputAsString(), JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    @DisplayName("Verify Response is Bad Request when a number parameter is invalid")
+    void verifyBadRequestWhenNumberIsInvalid() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("minYear", "20x9");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+        assertThat(response.getContentType(), containsString("application/json"));
+        JSONAssert.assertEquals("{error:\"Invalid value '20x9' for parameter minYear\"}", response.getOutputAsString(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    @DisplayName("Verify following the next cursors pages through all films without repetition")
+    void verifyPagingWithNextCursor() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("sortBy", "year");
+        params.put("limit", "500");
+        Set<String> titles = new HashSet<>();
+        int pages = 0;
+        String next = null;
+        do {
+            if (next != null) {
+                params.put("cursor", next);
+            }
+            request.setParameterMap(params);
+            MockSlingHttpServletResponse page = new MockSlingHttpServletResponse();
+            underTest.doGet(request, page);
+            JSONObject json = new JSONObject(page.getOutputAsString());
+            JSONArray result = json.getJSONArray("result");
+            for (int i = 0; i < result.length(); i++) {
+                titles.add(result.getJSONObject(i).getString("title") + "|" + result.getJSONObject(i).getString("year"));
+            }
+            next = json.optString("next", null);
+            pages++;
+        } while (next != null);
+
+        assertEquals(3, pages);
+        assertEquals(1316, titles.size());
+    }
+
+    @Test
+    @DisplayName("Verify Response is Bad Request when the cursor belongs to another sortBy")
+    void verifyBadRequestWhenCursorSortByDiffers() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("limit", "2");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        String next = new JSONObject(response.getOutputAsString()).getString("next");
+
+        params.put("sortBy", "awards");
+        params.put("cursor", next);
+        request.setParameterMap(params);
+        MockSlingHttpServletResponse mismatch = new MockSlingHttpServletResponse();
+        underTest.doGet(request, mismatch);
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, mismatch.getStatus());
+    }
+
+    @Test
+    @DisplayName("Verify Response contains only the requested fields")
+    void verifyResponseWithFieldsProjection() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("year", "2019");
+        params.put("minAwards", "4");
+        params.put("fields", "title,year");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        JSONAssert.assertEquals("{result:[{title:\"Parasite\",year:\"2019\"}]}", response.getOutputAsString(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    @DisplayName("Verify Response is Bad Request when an unknown field is requested")
+    void verifyBadRequestWhenFieldIsUnknown() throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("fields", "title,sling:resourceType");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Verify Response is gzip encoded when the client accepts gzip")
+    void verifyGzipResponseWhenAccepted() throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("minYear", "2000");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("Accept, Accept-Encoding", response.getHeader("Vary"));
+
+        request.addHeader("Accept-Encoding", "deflate, gzip;q=0.8");
+        MockSlingHttpServletResponse compressed = new MockSlingHttpServletResponse();
+        underTest.doGet(request, compressed);
+        assertEquals("gzip", compressed.getHeader("Content-Encoding"));
+        assertEquals("Accept, Accept-Encoding", compressed.getHeader("Vary"));
+        assertNotEquals(response.getHeader("ETag"), compressed.getHeader("ETag"));
+        assertTrue(compressed.getOutput().length < response.getOutput().length);
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed.getOutput()))) {
+            assertArrayEquals(response.getOutput(), IOUtils.toByteArray(gzip));
+        }
+
+        request.addHeader("If-None-Match", compressed.getHeader("ETag"));
+        MockSlingHttpServletResponse revalidation = new MockSlingHttpServletResponse();
+        underTest.doGet(request, revalidation);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, revalidation.getStatus());
+    }
+
+    @Test
+    @DisplayName("Verify Response is not gzip encoded when gzip is refused or the body is small")
+    void verifyPlainResponseWhenGzipNotAccepted() throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("minYear", "2000");
+        request.setParameterMap(params);
+        request.addHeader("Accept-Encoding", "*, gzip;q=0");
+        underTest.doGet(request, response);
+        assertNull(response.getHeader("Content-Encoding"));
+
+        params.put("title", "Parasite");
+        request.setParameterMap(params);
+        MockSlingHttpServletResponse small = new MockSlingHttpServletResponse();
+        MockSlingHttpServletRequest gzipRequest = new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        gzipRequest.setResource(context.currentResource());
+        gzipRequest.setParameterMap(params);
+        gzipRequest.addHeader("Accept-Encoding", "gzip");
+        underTest.doGet(gzipRequest, small);
+        assertNull(small.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    @DisplayName("Verify prefix, substring and fuzzy title searches combine with filters, sorting and limit")
+    void verifyResponseWhenTitleSearchIsProvided() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("titlePrefix", "spider");
+        params.put("titleContains", "MAN");
+        params.put("minYear", "1990");
+        params.put("sortBy", "year");
+        params.put("limit", "2");
+        params.put("fields", "title,year");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        JSONAssert.assertEquals("{result:[{title:\"Spider-Man 2\",year:\"2004\"},"
+                + "{title:\"Spider-Man: Into the Spider-Verse\",year:\"2018\"}]}",
+                response.getOutputAsString(), JSONCompareMode.STRICT);
+
+        final Map<String, Object> fuzzy = new HashMap<>();
+        fuzzy.put("titleFuzzy", "Paraside");
+        fuzzy.put("titleDistance", "1");
+        request.setParameterMap(fuzzy);
+        MockSlingHttpServletResponse fuzzyResponse = new MockSlingHttpServletResponse();
+        underTest.doGet(request, fuzzyResponse);
+        JSONAssert.assertEquals("{result:[{title:\"Parasite\"}]}", fuzzyResponse.getOutputAsString(),
+                JSONCompareMode.LENIENT);
+
+        fuzzy.put("titleDistance", "9");
+        request.setParameterMap(fuzzy);
+        MockSlingHttpServletResponse invalid = new MockSlingHttpServletResponse();
+        underTest.doGet(request, invalid);
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, invalid.getStatus());
+    }
+
+    @Test
+    @DisplayName("Verify Response is binary encoded for the bin extension or when the client accepts it")
+    void verifyBinaryResponse() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("minYear", "2018");
+        params.put("sortBy", "nominations");
+        params.put("limit", "3");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        JSONObject json = new JSONObject(response.getOutputAsString());
+
+        context.requestPathInfo().setExtension("bin");
+        MockSlingHttpServletResponse binary = new MockSlingHttpServletResponse();
+        underTest.doGet(request, binary);
+        assertEquals("application/vnd.cyberport.films", binary.getContentType());
+        assertNotEquals(response.getHeader("ETag"), binary.getHeader("ETag"));
+        FilmBinaryReader.Result result = FilmBinaryReader.read(binary.getOutput());
+        JSONArray films = json.getJSONArray("result");
+        assertEquals(films.length(), result.size());
+        for (int i = 0; i < result.size(); i++) {
+            JSONObject film = films.getJSONObject(i);
+            assertEquals(film.getString("title"), result.getTitle(i));
+            assertEquals(film.getInt("year"), result.getYear(i));
+            assertEquals(film.getInt("awards"), result.getAwards(i));
+            assertEquals(film.getInt("nominations"), result.getNominations(i));
+            assertEquals(film.getBoolean("isBestPicture"), result.isBestPicture(i));
+            assertEquals(film.getInt("numberOfReferences"), result.getNumberOfReferences(i));
+        }
+        assertEquals(json.getString("next"), result.getNext());
+
+        context.requestPathInfo().setExtension("json");
+        request.addHeader("Accept", "application/json;q=0.5, application/vnd.cyberport.films");
+        MockSlingHttpServletResponse negotiated = new MockSlingHttpServletResponse();
+        underTest.doGet(request, negotiated);
+        assertArrayEquals(binary.getOutput(), negotiated.getOutput());
+    }
+
+    @Test
+    @DisplayName("Verify phase timings, query shapes and hit rates are recorded per request")
+    void verifyMetricsAreRecorded() throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("minYear", "2000");
+        params.put("sortBy", "year");
+        params.put("limit", "5");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        underTest.doGet(request, new MockSlingHttpServletResponse());
+        params.put("minYear", "20x9");
+        request.setParameterMap(params);
+        underTest.doGet(request, new MockSlingHttpServletResponse());
+
+        final QueryMetrics metrics = filmQueryMetrics.getMetrics();
+        assertEquals(3, metrics.getRequestCount());
+        assertEquals(1, metrics.getRejectedCount());
+        assertEquals(0.5, metrics.getCacheHitRate());
+        assertEquals(0.5, metrics.getIndexHitRate());
+        assertEquals(1, filmQueryMetrics.getIndexBuildCount());
+        assertEquals(Collections.singletonMap("year;sortBy=year", 2L), metrics.getShapeCounts());
+        assertEquals(3, metrics.getPhase(QueryTrace.Phase.COMPILE).getCount());
+        assertEquals(2, metrics.getPhase(QueryTrace.Phase.CACHE).getCount());
+        assertEquals(1, metrics.getPhase(QueryTrace.Phase.SERIALIZE).getCount());
+        assertEquals(2, metrics.getPhase(QueryTrace.Phase.WRITE).getCount());
+        assertEquals(5, metrics.getResultSizes().getPercentile(100));
+
+        final TabularData latencies = filmQueryMetrics.getPhaseLatencies();
+        assertEquals(QueryTrace.Phase.values().length + 2, latencies.size());
+        assertEquals(1L, latencies.get(new Object[] { "select" }).get("count"));
+        assertEquals(2L, latencies.get(new Object[] { "write" }).get("count"));
+        assertEquals(1, filmQueryMetrics.getQueryShapes().size());
+
+        filmQueryMetrics.reset();
+        assertEquals(0, filmQueryMetrics.getRequestCount());
+        assertTrue(metrics.getShapeCounts().isEmpty());
+    }
+
+}
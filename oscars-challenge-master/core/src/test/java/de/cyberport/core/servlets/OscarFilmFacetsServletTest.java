@@ -0,0 +1,138 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.services.impl.FilmIndexServiceImpl;
+import de.cyberport.core.services.impl.FilmResultCacheImpl;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class OscarFilmFacetsServletTest {
+
+    private OscarFilmFacetsServlet underTest;
+
+    private FilmIndexServiceImpl filmIndexService;
+
+    private final AemContext context = new AemContext();
+
+    private final MockSlingHttpServletRequest request = context.request();
+    private final MockSlingHttpServletResponse response = context.response();
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json("/oscars.json", "/content/oscars");
+        context.currentResource("/content/oscars");
+        request.setResource(context.currentResource());
+        filmIndexService = context.registerInjectActivateService(new FilmIndexServiceImpl());
+        context.registerInjectActivateService(new FilmResultCacheImpl());
+        underTest = context.registerInjectActivateService(new OscarFilmFacetsServlet());
+    }
+
+    @Test
+    @DisplayName("Verify the facets of the films matching the filters")
+    void verifyFacetsOfFilteredFilms() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("minYear", "2018");
+        params.put("minAwards", "3");
+        params.put("limit", "1");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+
+        JSONAssert.assertEquals("{count:6,year:{\"2018\":4,\"2019\":2},awards:{\"3\":4,\"4\":2},"
+                        + "nominations:{\"5\":2,\"6\":1,\"7\":1,\"10\":2},isBestPicture:{\"true\":2,\"false\":4},"
+                        + "numberOfReferences:{min:463,max:8279,sum:17274}}",
+                response.getOutputAsString(), JSONCompareMode.STRICT);
+    }
+
+    @Test
+    @DisplayName("Verify the facets of all films add up to the number of films")
+    void verifyFacetsOfAllFilms() throws IOException, JSONException {
+        request.setParameterMap(new HashMap<>());
+        underTest.doGet(request, response);
+
+        JSONObject facets = new JSONObject(response.getOutputAsString());
+        assertEquals(1316, facets.getInt("count"));
+        for (String facet : new String[] { "year", "awards", "nominations", "isBestPicture" }) {
+            int sum = 0;
+            JSONObject counts = facets.getJSONObject(facet);
+            for (Iterator<String> values = counts.keys(); values.hasNext(); ) {
+                sum += counts.getInt(values.next());
+            }
+            assertEquals(1316, sum, facet);
+        }
+        assertEquals(92, facets.getJSONObject("isBestPicture").getInt("true"));
+    }
+
+    @Test
+    @DisplayName("Verify the facets without matching films and after a references update")
+    void verifyEmptyFacetsAndReferencesUpdate() throws IOException, JSONException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("title", "Parasite");
+        params.put("year", "1800");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        JSONAssert.assertEquals("{count:0,year:{},awards:{},nominations:{},isBestPicture:{},numberOfReferences:{sum:0}}",
+                response.getOutputAsString(), JSONCompareMode.STRICT);
+
+        params.remove("year");
+        request.setParameterMap(params);
+        filmIndexService.updateReferences(Collections.singletonMap("/content/oscars/1315", 9000));
+        MockSlingHttpServletResponse updated = new MockSlingHttpServletResponse();
+        underTest.doGet(request, updated);
+        JSONAssert.assertEquals("{count:1,numberOfReferences:{min:9000,max:9000,sum:9000}}",
+                updated.getOutputAsString(), JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    @DisplayName("Verify sortBy, limit, cursor and fields are ignored by the facets")
+    void verifyNonFilterParametersAreIgnored() throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("year", "2019");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+
+        params.put("sortBy", "year");
+        params.put("limit", "x");
+        params.put("cursor", "not a cursor");
+        params.put("fields", "unknown");
+        request.setParameterMap(params);
+        MockSlingHttpServletResponse ignored = new MockSlingHttpServletResponse();
+        underTest.doGet(request, ignored);
+
+        assertEquals(HttpServletResponse.SC_OK, ignored.getStatus());
+        assertEquals(response.getHeader("ETag"), ignored.getHeader("ETag"));
+        assertEquals(response.getOutputAsString(), ignored.getOutputAsString());
+    }
+
+    @Test
+    @DisplayName("Verify invalid filters are answered with Bad Request")
+    void verifyBadRequestWhenFilterIsInvalid() throws IOException {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("nominations", "x");
+        request.setParameterMap(params);
+        underTest.doGet(request, response);
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+}
@@ -0,0 +1,161 @@
+package de.cyberport.core.servlets;
+
+import de.cyberport.core.services.impl.FilmIndexServiceImpl;
+import de.cyberport.core.services.impl.FilmQueryMetricsImpl;
+import de.cyberport.core.services.impl.FilmResultCacheImpl;
+import de.cyberport.core.services.impl.FilmSlowQueryLogImpl;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletRequest;
+import org.apache.sling.testing.mock.sling.servlet.MockSlingHttpServletResponse;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class OscarFilmSlowQueriesServletTest {
+
+    private final AemContext context = new AemContext();
+
+    private OscarFilmContainerServlet containerServlet;
+
+    private OscarFilmSlowQueriesServlet underTest;
+
+    @BeforeEach
+    public void setUp() {
+        context.load().json("/oscars.json", "/content/oscars");
+        context.currentResource("/content/oscars");
+    }
+
+    @Test
+    @DisplayName("Verify slow queries are listed newest first with their examined rows and timings")
+    void verifySlowQueriesAreLogged() throws Exception {
+        register(0, 1.0, 10);
+        get("sortBy", "year", "limit", "10");
+        get("title", "Parasite");
+        get("title", "Parasite");
+        get("minYear", "20x9");
+
+        final JSONArray slowQueries = getSlowQueries();
+        assertEquals(3, slowQueries.length());
+
+        final JSONObject cached = slowQueries.getJSONObject(0);
+        assertTrue(cached.getBoolean("cacheHit"));
+        assertEquals(0, cached.getInt("examinedRows"));
+
+        final JSONObject lookup = slowQueries.getJSONObject(1);
+        assertEquals("/content/oscars", lookup.getString("containerPath"));
+        assertEquals("title;sortBy=title", lookup.getString("shape"));
+        assertFalse(lookup.getBoolean("cacheHit"));
+        assertEquals(1, lookup.getInt("examinedRows"));
+        assertEquals(1, lookup.getInt("returnedRows"));
+
+        final JSONObject scan = slowQueries.getJSONObject(2);
+        assertEquals("sortBy=year&limit=10", scan.getString("query"));
+        assertEquals(11, scan.getInt("examinedRows"));
+        assertEquals(10, scan.getInt("returnedRows"));
+        final JSONObject phases = scan.getJSONObject("phases");
+        double sum = 0;
+        for (String phase : new String[] { "compile", "index", "cache", "select", "serialize", "write" }) {
+            assertTrue(phases.getDouble(phase) >= 0);
+            sum += phases.getDouble(phase);
+        }
+        assertEquals(scan.getDouble("durationMillis"), sum, 0.01);
+    }
+
+    @Test
+    @DisplayName("Verify only the most recent slow queries are kept")
+    void verifyCapacityIsBounded() throws Exception {
+        register(0, 1.0, 2);
+        for (int year = 2015; year < 2020; year++) {
+            get("year", String.valueOf(year));
+        }
+
+        final JSONArray slowQueries = getSlowQueries();
+        assertEquals(2, slowQueries.length());
+        assertTrue(slowQueries.getJSONObject(0).getString("query").startsWith("minYear=2019&maxYear=2019&"));
+        assertTrue(slowQueries.getJSONObject(1).getString("query").startsWith("minYear=2018&maxYear=2018&"));
+    }
+
+    @Test
+    @DisplayName("Verify no query is logged below the threshold")
+    void verifyFastQueriesAreNotLogged() throws Exception {
+        register(60000, 1.0, 10);
+        get("year", "2019");
+        assertEquals(0, getSlowQueries().length());
+    }
+
+    @Test
+    @DisplayName("Verify no query is logged with a sample rate of 0")
+    void verifyUnsampledQueriesAreNotLogged() throws Exception {
+        register(0, 0, 10);
+        get("year", "2019");
+        assertEquals(0, getSlowQueries().length());
+    }
+
+    @Test
+    @DisplayName("Verify the slow queries are not listed unless the listing is enabled")
+    void verifyListingIsDisabledByDefault() throws IOException {
+        context.registerInjectActivateService(new FilmSlowQueryLogImpl());
+        underTest = context.registerInjectActivateService(new OscarFilmSlowQueriesServlet());
+        final MockSlingHttpServletRequest request =
+                new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        final MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        request.setResource(context.currentResource());
+        underTest.doGet(request, response);
+        assertEquals(404, response.getStatus());
+    }
+
+    private void register(final long thresholdMillis, final double sampleRate, final int capacity)
+            throws Exception {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("thresholdMillis", thresholdMillis);
+        properties.put("sampleRate", sampleRate);
+        properties.put("capacity", capacity);
+        properties.put("listingEnabled", true);
+        context.registerInjectActivateService(new FilmQueryMetricsImpl());
+        context.registerInjectActivateService(new FilmIndexServiceImpl());
+        context.registerInjectActivateService(new FilmResultCacheImpl());
+        context.registerInjectActivateService(new FilmSlowQueryLogImpl(), properties);
+        containerServlet = context.registerInjectActivateService(new OscarFilmContainerServlet());
+        underTest = context.registerInjectActivateService(new OscarFilmSlowQueriesServlet());
+    }
+
+    private void get(final String... parameters) throws IOException {
+        final Map<String, Object> parameterMap = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            parameterMap.put(parameters[i], parameters[i + 1]);
+        }
+        final MockSlingHttpServletRequest request =
+                new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        request.setResource(context.currentResource());
+        request.setParameterMap(parameterMap);
+        containerServlet.doGet(request, new MockSlingHttpServletResponse());
+    }
+
+    private JSONArray getSlowQueries() throws IOException, JSONException {
+        final MockSlingHttpServletRequest request =
+                new MockSlingHttpServletRequest(context.resourceResolver(), context.bundleContext());
+        final MockSlingHttpServletResponse response = new MockSlingHttpServletResponse();
+        request.setResource(context.currentResource());
+        underTest.doGet(request, response);
+        assertEquals(200, response.getStatus());
+        return new JSONObject(response.getOutputAsString()).getJSONArray("slowQueries");
+    }
+}
@@ -0,0 +1,117 @@
+package de.cyberport.core.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Drives one request from a number of concurrent threads and measures the latency of every request.
+ * Each thread first warms up with requests that are not measured, then all threads start the
+ * measured requests at the same time. Every thread draws from its own seeded {@link Random}, so
+ * that the mix of requests is the same on every run.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class LoadHarness {
+
+    private final int threads;
+    private final int warmupRequests;
+    private final int requests;
+
+    /**
+     * @param threads number of concurrent threads
+     * @param warmupRequests requests per thread before the measurement
+     * @param requests measured requests per thread
+     */
+    public LoadHarness(final int threads, final int warmupRequests, final int requests) {
+        if (threads < 1 || warmupRequests < 0 || requests < 1) {
+            throw new IllegalArgumentException("Invalid load of " + threads + " threads with " + warmupRequests
+                    + " warmup and " + requests + " measured requests");
+        }
+        this.threads = threads;
+        this.warmupRequests = warmupRequests;
+        this.requests = requests;
+    }
+
+    /**
+     * One request of the load.
+     */
+    @FunctionalInterface
+    public interface Request {
+
+        /**
+         * Execute the request
+         * @param random source of the request parameters, owned by the calling thread
+         * @return false when the response is not as expected
+         * @throws Exception
+         */
+        boolean execute(Random random) throws Exception;
+    }
+
+    /**
+     * Run the load and wait for all threads to complete
+     * @param request
+     * @return
+     * @throws InterruptedException
+     */
+    public LoadReport run(final Request request) throws InterruptedException {
+        final CyclicBarrier start = new CyclicBarrier(threads + 1);
+        final long[][] latencies = new long[threads][requests];
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final List<Thread> workers = new ArrayList<>(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            final long[] threadLatencies = latencies[thread];
+            final Random random = new Random(SyntheticFilms.DEFAULT_SEED + thread);
+            final Thread worker = new Thread(() -> {
+                try {
+                    for (int warmup = 0; warmup < warmupRequests; warmup++) {
+                        execute(request, random, errors, failure);
+                    }
+                    start.await();
+                    for (int measured = 0; measured < requests; measured++) {
+                        final long started = System.nanoTime();
+                        execute(request, random, errors, failure);
+                        threadLatencies[measured] = System.nanoTime() - started;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (BrokenBarrierException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "load-" + thread);
+            workers.add(worker);
+            worker.start();
+        }
+
+        final long started;
+        try {
+            start.await();
+            started = System.nanoTime();
+        } catch (BrokenBarrierException e) {
+            throw new IllegalStateException("Load threads failed to start", e);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new LoadReport(latencies, System.nanoTime() - started, errors.get(), failure.get());
+    }
+
+    private static void execute(final Request request, final Random random, final AtomicInteger errors,
+                                final AtomicReference<Throwable> failure) {
+        try {
+            if (!request.execute(random)) {
+                errors.incrementAndGet();
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            failure.compareAndSet(null, e);
+        }
+    }
+}
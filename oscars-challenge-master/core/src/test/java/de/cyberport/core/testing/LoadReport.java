@@ -0,0 +1,73 @@
+package de.cyberport.core.testing;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency distribution of the measured requests of a {@link LoadHarness} run.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class LoadReport {
+
+    private final long[] latencies;
+    private final int threads;
+    private final long elapsedNanos;
+    private final int errors;
+    private final Throwable failure;
+
+    LoadReport(final long[][] latenciesPerThread, final long elapsedNanos, final int errors, final Throwable failure) {
+        this.latencies = Arrays.stream(latenciesPerThread).flatMapToLong(Arrays::stream).sorted().toArray();
+        this.threads = latenciesPerThread.length;
+        this.elapsedNanos = elapsedNanos;
+        this.errors = errors;
+        this.failure = failure;
+    }
+
+    public int getRequests() {
+        return latencies.length;
+    }
+
+    /**
+     * Requests that failed or answered unexpectedly, warmup requests included
+     * @return
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * First exception thrown by a request, null when there was none
+     * @return
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Measured requests per second over all threads
+     * @return
+     */
+    public double getThroughput() {
+        return latencies.length * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * Latency below which the given share of the measured requests completed, by nearest rank
+     * @param percentile between 0, exclusive, and 100
+     * @return latency in milliseconds
+     */
+    public double getLatencyMillis(final double percentile) {
+        final int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+        return latencies[Math.max(0, Math.min(latencies.length, rank) - 1)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests from %d threads in %.1f s: %.0f requests/s, latency p50 %.3f ms, "
+                        + "p99 %.3f ms, p99.9 %.3f ms, max %.3f ms, %d errors",
+                latencies.length, threads, elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1), getThroughput(),
+                getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(99.9), getLatencyMillis(100), errors);
+    }
+}
@@ -0,0 +1,77 @@
+package de.cyberport.core.testing;
+
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static de.cyberport.core.constants.OscarConstants.*;
+
+/**
+ * Creates film containers of generated films in the repository of an {@link AemContext}, with the
+ * same structure and property types as the content loaded from oscars.json.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class SyntheticFilmContent {
+
+    public static final String CONTAINER_RESOURCE_TYPE = "test/filmEntryContainer";
+    public static final String ENTRY_RESOURCE_TYPE = "test/filmEntry";
+
+    private static final String PRIMARY_TYPE = "jcr:primaryType";
+    private static final String RESOURCE_TYPE = "sling:resourceType";
+    private static final String UNSTRUCTURED = "nt:unstructured";
+
+    private SyntheticFilmContent() {
+    }
+
+    /**
+     * Create the film container at the given path with the given number of films of the distribution.
+     * All resources are committed at once.
+     * @param context
+     * @param path path of the container, missing parents are created
+     * @param films
+     * @param count
+     * @param seed
+     * @return the container resource
+     * @throws PersistenceException
+     */
+    public static Resource createContainer(final AemContext context, final String path, final SyntheticFilms films,
+                                           final int count, final long seed) throws PersistenceException {
+        final ResourceResolver resolver = context.resourceResolver();
+        final Map<String, Object> containerProperties = new HashMap<>();
+        containerProperties.put(PRIMARY_TYPE, UNSTRUCTURED);
+        containerProperties.put(RESOURCE_TYPE, CONTAINER_RESOURCE_TYPE);
+        final Resource parent = ResourceUtil.getOrCreateResource(resolver, ResourceUtil.getParent(path),
+                (String) null, null, false);
+        final Resource container = resolver.create(parent, ResourceUtil.getName(path), containerProperties);
+
+        final PersistenceException[] failure = new PersistenceException[1];
+        films.generate(count, seed, (name, title, year, awards, nominations, bestPicture, references) -> {
+            final Map<String, Object> properties = new HashMap<>();
+            properties.put(TITLE, title);
+            properties.put(YEAR, year);
+            properties.put(AWARDS, awards);
+            properties.put(NOMINATIONS, nominations);
+            properties.put(IS_BEST_PICTURE, bestPicture);
+            properties.put(NUMBER_OF_REFERENCES, references);
+            properties.put(PRIMARY_TYPE, UNSTRUCTURED);
+            properties.put(RESOURCE_TYPE, ENTRY_RESOURCE_TYPE);
+            try {
+                resolver.create(container, name, properties);
+            } catch (PersistenceException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        resolver.commit();
+        return resolver.getResource(path);
+    }
+}
@@ -0,0 +1,252 @@
+package de.cyberport.core.testing;
+
+import de.cyberport.core.index.FilmTable;
+
+import java.util.Random;
+
+/**
+ * Deterministic generator of films with a configurable value distribution. The default one is close
+ * to oscars.json: years from 1927 to 2019, mostly one or two awards, a few more nominations than
+ * awards, about one best picture in fourteen films, some titles shared by several films and a long
+ * tail of references. The same distribution, count and seed always yield the same films, so that
+ * results are comparable between runs.
+ *
+ * @author ritendra_singh
+ *
+ */
+public final class SyntheticFilms {
+
+    public static final long DEFAULT_SEED = 1927L;
+
+    public static final SyntheticFilms DEFAULT = builder().build();
+
+    private static final int MAX_AWARDS = 11;
+    private static final int MAX_NOMINATIONS = 14;
+    private static final int MAX_REFERENCES = 100000;
+    private static final String[] WORDS = {
+            "The", "Last", "Great", "Night", "City", "River", "King", "Love", "Story", "War",
+            "Man", "Woman", "House", "Road", "Sea", "Star", "Dream", "Lost", "Golden", "Wild"
+    };
+
+    private final int firstYear;
+    private final int lastYear;
+    private final double yearSkew;
+    private final double awardSkew;
+    private final double bestPictureRate;
+    private final double duplicateTitleRate;
+    private final int minTitleWords;
+    private final int maxTitleWords;
+
+    private SyntheticFilms(final Builder builder) {
+        this.firstYear = builder.firstYear;
+        this.lastYear = builder.lastYear;
+        this.yearSkew = builder.yearSkew;
+        this.awardSkew = builder.awardSkew;
+        this.bestPictureRate = builder.bestPictureRate;
+        this.duplicateTitleRate = builder.duplicateTitleRate;
+        this.minTitleWords = builder.minTitleWords;
+        this.maxTitleWords = builder.maxTitleWords;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Receives the properties of every generated film.
+     */
+    @FunctionalInterface
+    public interface FilmConsumer {
+
+        void accept(String name, String title, int year, int awards, int nominations, boolean bestPicture,
+                    int numberOfReferences);
+    }
+
+    /**
+     * Generate the given number of films, named by their position like the entries of oscars.json
+     * @param count
+     * @param seed
+     * @param consumer
+     */
+    public void generate(final int count, final long seed, final FilmConsumer consumer) {
+        final Random random = new Random(seed);
+        for (int film = 0; film < count; film++) {
+            final int titleId = random.nextDouble() < duplicateTitleRate ? random.nextInt(film + 1) : film;
+            final int year = Math.min(lastYear,
+                    firstYear + (int) ((lastYear - firstYear + 1) * Math.pow(random.nextDouble(), 1 / yearSkew)));
+            final int awards = Math.min(MAX_AWARDS, 1 + geometric(random, awardSkew));
+            final int nominations = Math.min(MAX_NOMINATIONS, awards + geometric(random, 0.35));
+            final boolean bestPicture = random.nextDouble() < bestPictureRate;
+            final int references = (int) Math.min(MAX_REFERENCES, Math.exp(6 + 1.5 * random.nextGaussian()));
+            consumer.accept(String.valueOf(film), title(titleId), year, awards, nominations,
+                    bestPicture, references);
+        }
+    }
+
+    /**
+     * Number of words of the title, derived from its id so that repeated titles stay the same
+     * @param titleId
+     * @return
+     */
+    private int titleWords(final int titleId) {
+        return minTitleWords + (int) ((titleId * 2654435761L & 0xffffffffL) % (maxTitleWords - minTitleWords + 1));
+    }
+
+    /**
+     * Table of the given number of generated films
+     * @param count
+     * @param seed
+     * @return
+     */
+    public FilmTable table(final int count, final long seed) {
+        final FilmTable.Builder builder = new FilmTable.Builder();
+        generate(count, seed, builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Title of the given title id, which is the position of the film, unless the film repeats the
+     * title of an earlier one
+     * @param titleId
+     * @return
+     */
+    public String title(final int titleId) {
+        return title(titleId, titleWords(titleId));
+    }
+
+    /**
+     * Title of the given id, composed of one word per digit of the id in base of the word list, so
+     * that every id has its own title. Titles shorter than the requested number of words get a
+     * subtitle derived from the id as well.
+     * @param titleId
+     * @param words
+     * @return
+     */
+    private static String title(final int titleId, final int words) {
+        final StringBuilder title = new StringBuilder();
+        int remaining = titleId;
+        int count = 0;
+        do {
+            appendWord(title, WORDS[remaining % WORDS.length]);
+            remaining /= WORDS.length;
+            count++;
+        } while (remaining > 0);
+        if (count < words) {
+            title.append(':');
+            for (int word = count; word < words; word++) {
+                appendWord(title, WORDS[(titleId + word * 7) % WORDS.length]);
+            }
+        }
+        return title.toString();
+    }
+
+    private static void appendWord(final StringBuilder title, final String word) {
+        if (title.length() > 0) {
+            title.append(' ');
+        }
+        title.append(word);
+    }
+
+    private static int geometric(final Random random, final double probability) {
+        int failures = 0;
+        while (random.nextDouble() >= probability) {
+            failures++;
+        }
+        return failures;
+    }
+
+    /**
+     * Distribution of the generated values.
+     */
+    public static final class Builder {
+
+        private int firstYear = 1927;
+        private int lastYear = 2019;
+        private double yearSkew = 1;
+        private double awardSkew = 0.6;
+        private double bestPictureRate = 1d / 14;
+        private double duplicateTitleRate = 0.01;
+        private int minTitleWords = 1;
+        private int maxTitleWords = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * Range of the years, by default spread evenly
+         * @param firstYear
+         * @param lastYear
+         * @return
+         */
+        public Builder years(final int firstYear, final int lastYear) {
+            if (firstYear > lastYear) {
+                throw new IllegalArgumentException("First year " + firstYear + " after last year " + lastYear);
+            }
+            this.firstYear = firstYear;
+            this.lastYear = lastYear;
+            return this;
+        }
+
+        /**
+         * Skew of the years towards the last year, 1 spreads them evenly, 2 lets the number of films
+         * per year grow linearly from the first to the last year
+         * @param yearSkew
+         * @return
+         */
+        public Builder yearSkew(final double yearSkew) {
+            if (yearSkew <= 0) {
+                throw new IllegalArgumentException("Year skew must be positive: " + yearSkew);
+            }
+            this.yearSkew = yearSkew;
+            return this;
+        }
+
+        /**
+         * Chance of a film to stop at each further award, the higher it is, the more films win a
+         * single award only
+         * @param awardSkew between 0, exclusive, and 1
+         * @return
+         */
+        public Builder awardSkew(final double awardSkew) {
+            if (awardSkew <= 0 || awardSkew > 1) {
+                throw new IllegalArgumentException("Award skew must be in (0, 1]: " + awardSkew);
+            }
+            this.awardSkew = awardSkew;
+            return this;
+        }
+
+        public Builder bestPictureRate(final double bestPictureRate) {
+            this.bestPictureRate = bestPictureRate;
+            return this;
+        }
+
+        /**
+         * Share of the films that repeat the title of an earlier film
+         * @param duplicateTitleRate
+         * @return
+         */
+        public Builder duplicateTitleRate(final double duplicateTitleRate) {
+            this.duplicateTitleRate = duplicateTitleRate;
+            return this;
+        }
+
+        /**
+         * Range of the number of words per title, titles that need more words to be unique keep them
+         * @param minTitleWords
+         * @param maxTitleWords
+         * @return
+         */
+        public Builder titleWords(final int minTitleWords, final int maxTitleWords) {
+            if (minTitleWords < 1 || minTitleWords > maxTitleWords) {
+                throw new IllegalArgumentException("Invalid title words " + minTitleWords + ".." + maxTitleWords);
+            }
+            this.minTitleWords = minTitleWords;
+            this.maxTitleWords = maxTitleWords;
+            return this;
+        }
+
+        public SyntheticFilms build() {
+            return new SyntheticFilms(this);
+        }
+    }
+}
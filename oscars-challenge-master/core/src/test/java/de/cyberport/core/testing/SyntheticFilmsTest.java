@@ -0,0 +1,84 @@
+package de.cyberport.core.testing;
+
+import de.cyberport.core.index.FilmIndex;
+import de.cyberport.core.index.FilmTable;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author ritendra_singh
+ *
+ */
+@ExtendWith(AemContextExtension.class)
+class SyntheticFilmsTest {
+
+    private final AemContext context = new AemContext();
+
+    @Test
+    @DisplayName("Verify same films for the same seed")
+    void verifySameFilmsForSameSeed() {
+        final FilmTable first = SyntheticFilms.DEFAULT.table(1000, 7);
+        final FilmTable second = SyntheticFilms.DEFAULT.table(1000, 7);
+        for (int row = 0; row < 1000; row++) {
+            assertEquals(first.getTitle(row), second.getTitle(row));
+            assertEquals(first.getYear(row), second.getYear(row));
+            assertEquals(first.getAwards(row), second.getAwards(row));
+            assertEquals(first.getNominations(row), second.getNominations(row));
+            assertEquals(first.isBestPicture(row), second.isBestPicture(row));
+            assertEquals(first.getNumberOfReferences(row), second.getNumberOfReferences(row));
+        }
+    }
+
+    @Test
+    @DisplayName("Verify values within the configured distribution")
+    void verifyConfiguredDistribution() {
+        final SyntheticFilms films = SyntheticFilms.builder()
+                .years(2000, 2009)
+                .yearSkew(2)
+                .awardSkew(0.9)
+                .duplicateTitleRate(0.2)
+                .titleWords(3, 5)
+                .build();
+        final FilmTable table = films.table(10000, SyntheticFilms.DEFAULT_SEED);
+
+        int singleAward = 0;
+        int lastYear = 0;
+        int firstYear = 0;
+        for (int row = 0; row < table.size(); row++) {
+            assertTrue(table.getYear(row) >= 2000 && table.getYear(row) <= 2009);
+            assertTrue(table.getNominations(row) >= table.getAwards(row));
+            final int words = table.getTitle(row).split(" ").length;
+            assertTrue(words >= 3 && words <= 5, table.getTitle(row));
+            singleAward += table.getAwards(row) == 1 ? 1 : 0;
+            lastYear += table.getYear(row) == 2009 ? 1 : 0;
+            firstYear += table.getYear(row) == 2000 ? 1 : 0;
+        }
+        assertTrue(singleAward > 8500, "single award films: " + singleAward);
+        assertTrue(lastYear > 10 * firstYear, lastYear + " films in the last, " + firstYear + " in the first year");
+        assertTrue(table.getDistinctTitleCount() < 8500, "distinct titles: " + table.getDistinctTitleCount());
+        assertThrows(IllegalArgumentException.class, () -> SyntheticFilms.builder().titleWords(0, 1));
+    }
+
+    @Test
+    @DisplayName("Verify film container created in the repository")
+    void verifyFilmContainer() throws PersistenceException {
+        final Resource container = SyntheticFilmContent.createContainer(context, "/content/generated/films",
+                SyntheticFilms.DEFAULT, 2500, SyntheticFilms.DEFAULT_SEED);
+        final FilmTable expected = SyntheticFilms.DEFAULT.table(2500, SyntheticFilms.DEFAULT_SEED);
+
+        assertEquals(SyntheticFilmContent.CONTAINER_RESOURCE_TYPE, container.getResourceType());
+        final FilmIndex index = FilmIndex.build(container);
+        assertEquals(2500, index.size());
+        assertEquals(expected.getTitle(2499), index.getTable().getTitle(index.getTable().getRow("2499")));
+        assertEquals(expected.getYear(42), index.getTable().getYear(index.getTable().getRow("42")));
+    }
+}